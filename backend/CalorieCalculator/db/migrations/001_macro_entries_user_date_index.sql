@@ -0,0 +1,3 @@
+-- Range queries on macro_entries (FindMacro fromDate/toDate, exports) filter on userId and a
+-- date range; this index lets MySQL answer them with one range scan per user.
+CREATE INDEX idx_macro_entries_user_date ON macro_entries (userId, entryDate);
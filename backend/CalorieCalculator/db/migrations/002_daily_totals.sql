@@ -0,0 +1,18 @@
+-- Per-user daily rollup of macro_entries, kept current by userdao.logMacro / editMacro.
+-- Repair with com.example.caloriecalculator.job.RebuildDailyTotals.
+CREATE TABLE daily_totals (
+    userId INT NOT NULL,
+    totalDate DATE NOT NULL,
+    calories INT NOT NULL DEFAULT 0,
+    carbs DECIMAL(10,2) NOT NULL DEFAULT 0,
+    protein DECIMAL(10,2) NOT NULL DEFAULT 0,
+    fat DECIMAL(10,2) NOT NULL DEFAULT 0,
+    entryCount INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (userId, totalDate)
+);
+
+-- Backfill from existing entries
+INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount)
+SELECT userId, entryDate, SUM(calories), SUM(carbs), SUM(protein), SUM(fat), COUNT(*)
+FROM macro_entries
+GROUP BY userId, entryDate;
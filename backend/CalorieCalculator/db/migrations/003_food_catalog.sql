@@ -0,0 +1,19 @@
+-- Global product catalog shared by all users, one row per barcode.
+-- FoodDao.getScannedFood falls back to it when the user has no scanned_foods row of their own;
+-- a user's own row always wins, so per-user overrides keep working.
+CREATE TABLE food_catalog (
+    barcode VARCHAR(32) NOT NULL PRIMARY KEY,
+    foodName VARCHAR(255) NOT NULL,
+    calories INT NOT NULL,
+    carbs DECIMAL(6,2) NOT NULL,
+    protein DECIMAL(6,2) NOT NULL,
+    fat DECIMAL(6,2) NOT NULL,
+    createdBy VARCHAR(20),
+    createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Seed from existing scans; the earliest scan of each barcode wins
+INSERT IGNORE INTO food_catalog (barcode, foodName, calories, carbs, protein, fat, createdBy, createdAt)
+SELECT barcode, foodName, calories, carbs, protein, fat, userId, scannedDate
+FROM scanned_foods
+ORDER BY scannedDate, foodId;
@@ -0,0 +1,6 @@
+-- FoodDao.saveScannedFood and the bulk import rely on this key instead of check-then-insert.
+-- Keep the oldest row of any (userId, barcode) pair duplicated by the old race first.
+DELETE s FROM scanned_foods s
+JOIN scanned_foods k ON k.userId = s.userId AND k.barcode = s.barcode AND k.foodId < s.foodId;
+
+ALTER TABLE scanned_foods ADD UNIQUE KEY uq_scanned_foods_user_barcode (userId, barcode);
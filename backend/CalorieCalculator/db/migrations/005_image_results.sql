@@ -0,0 +1,15 @@
+-- Parsed model results keyed by the SHA-256 of the decoded image, so a re-uploaded photo skips the
+-- model call. Rows older than the cache TTL are ignored on read and removed by
+-- com.example.caloriecalculator.job.PruneImageResults.
+CREATE TABLE image_results (
+    contentHash CHAR(64) NOT NULL PRIMARY KEY,
+    label VARCHAR(255) NOT NULL,
+    calories INT NOT NULL,
+    protein INT NOT NULL,
+    carbs INT NOT NULL,
+    fat INT NOT NULL,
+    createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastHitAt TIMESTAMP NULL,
+    hits INT NOT NULL DEFAULT 0
+);
+CREATE INDEX idx_image_results_created ON image_results (createdAt);
@@ -0,0 +1,14 @@
+-- Image bytes move out of MySQL into the content-addressed ImageStore on disk
+-- (macrotracker.imageStore.dir). New rows carry only the hash, size and MIME type of the photo;
+-- base64Input stays NULL for them.
+ALTER TABLE image_queries
+    ADD COLUMN contentHash CHAR(64) NULL,
+    ADD COLUMN imageSize INT NULL,
+    ADD COLUMN mimeType VARCHAR(32) NULL,
+    MODIFY base64Input LONGTEXT NULL;
+
+-- Existing rows are moved with com.example.caloriecalculator.job.MigrateImagesToStore, which writes
+-- each image to the store and then clears its base64Input. Once it reports nothing left, reclaim
+-- the space:
+--   ALTER TABLE image_queries DROP COLUMN base64Input;
+--   OPTIMIZE TABLE image_queries;
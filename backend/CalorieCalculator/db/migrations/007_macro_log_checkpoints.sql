@@ -0,0 +1,8 @@
+-- How far each write-behind log (com.example.caloriecalculator.dao.MacroWriteBehind) has been
+-- applied to macro_entries. Updated in the same transaction as the entries it covers, so
+-- replaying a log after a crash skips exactly what already reached MySQL.
+CREATE TABLE macro_log_checkpoints (
+    logId CHAR(36) NOT NULL PRIMARY KEY,
+    lastSequence BIGINT NOT NULL,
+    updatedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
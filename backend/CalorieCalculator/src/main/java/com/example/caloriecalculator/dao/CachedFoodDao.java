@@ -0,0 +1,160 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.Barcodes;
+import com.example.caloriecalculator.helper.BoundedCache;
+import com.example.caloriecalculator.helper.ScannedFood;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * FoodDao with read-through caches of barcode lookups: per-user entries keyed by (userId, barcode)
+ * and shared catalog entries keyed by barcode alone, so a catalogued product is cached once for
+ * every user.
+ *
+ * Misses are cached too, with a shorter TTL, so repeated scans of an unknown product don't
+ * reach MySQL. A save invalidates both keys. Barcodes that are not a valid EAN-8/UPC-A/EAN-13
+ * and non-numeric user ids bypass the cache and go straight to the database.
+ *
+ * A lookup that overlaps a save is not cached: lookups and invalidations are ordered under one lock
+ * by a write counter, as in {@link CachedUserDao}, so a miss read just before a save can't be
+ * cached after it.
+ *
+ * The caches are shared by every instance so a save through one servlet is seen by all of them.
+ */
+public class CachedFoodDao extends FoodDao {
+    private static final int MAX_SIZE = Integer.getInteger("macrotracker.barcodeCache.maxSize", 100_000);
+    private static final int CATALOG_MAX_SIZE = Integer.getInteger("macrotracker.catalogCache.maxSize", 50_000);
+    private static final long TTL_MILLIS = Long.getLong("macrotracker.barcodeCache.ttlMillis", 30 * 60_000L);
+    private static final long NEGATIVE_TTL_MILLIS = Long.getLong("macrotracker.barcodeCache.negativeTtlMillis", 60_000L);
+
+    // Stored for lookups that found nothing; never handed to callers
+    private static final ScannedFood NOT_FOUND = new ScannedFood(0, null, null, null, 0, null, null, null, null);
+
+    private static final BoundedCache<FoodKey, ScannedFood> CACHE = new BoundedCache<>("barcode", MAX_SIZE);
+    private static final BoundedCache<Long, ScannedFood> CATALOG_CACHE = new BoundedCache<>("catalog", CATALOG_MAX_SIZE);
+    private static final Object LOCK = new Object();
+    private static final AtomicLong writes = new AtomicLong();
+
+    public CachedFoodDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public ScannedFood findUserFood(String userId, String barcode) throws SQLException {
+        FoodKey key = keyFor(userId, barcode);
+        if (key == null) {
+            return super.findUserFood(userId, barcode);
+        }
+        ScannedFood cached = CACHE.get(key);
+        if (cached != null) {
+            return cached == NOT_FOUND ? null : cached;
+        }
+        long generation = writes.get();
+        ScannedFood food = super.findUserFood(userId, barcode);
+        cache(CACHE, key, food, generation);
+        return food;
+    }
+
+    @Override
+    public ScannedFood findCatalogFood(String barcode) throws SQLException {
+        long code = Barcodes.toKey(barcode);
+        if (code == Barcodes.INVALID) {
+            return super.findCatalogFood(barcode);
+        }
+        ScannedFood cached = CATALOG_CACHE.get(code);
+        if (cached != null) {
+            return cached == NOT_FOUND ? null : cached;
+        }
+        long generation = writes.get();
+        ScannedFood food = super.findCatalogFood(barcode);
+        cache(CATALOG_CACHE, code, food, generation);
+        return food;
+    }
+
+    @Override
+    public boolean saveScannedFood(String userId, String barcode, String foodName, int calories,
+                                   BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
+        try {
+            return super.saveScannedFood(userId, barcode, foodName, calories, carbs, protein, fat);
+        } finally {
+            invalidate(userId, barcode);
+        }
+    }
+
+    @Override
+    public void upsertScannedFoods(String userId, List<ScannedFood> foods) throws SQLException {
+        try {
+            super.upsertScannedFoods(userId, foods);
+        } finally {
+            for (ScannedFood food : foods) {
+                invalidate(userId, food.getBarcode());
+            }
+        }
+    }
+
+    @Override
+    public void upsertCatalogFoods(List<ScannedFood> foods, String createdBy) throws SQLException {
+        try {
+            super.upsertCatalogFoods(foods, createdBy);
+        } finally {
+            synchronized (LOCK) {
+                writes.incrementAndGet();
+                for (ScannedFood food : foods) {
+                    long code = Barcodes.toKey(food.getBarcode());
+                    if (code != Barcodes.INVALID) {
+                        CATALOG_CACHE.invalidate(code);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void invalidate(String userId, String barcode) {
+        FoodKey key = keyFor(userId, barcode);
+        long code = Barcodes.toKey(barcode);
+        synchronized (LOCK) {
+            writes.incrementAndGet();
+            if (key != null) {
+                CACHE.invalidate(key);
+            }
+            if (code != Barcodes.INVALID) {
+                CATALOG_CACHE.invalidate(code);
+            }
+        }
+    }
+
+    // Skipped if anything was invalidated since the lookup began; its result may predate that save
+    private static <K> void cache(BoundedCache<K, ScannedFood> cache, K key, ScannedFood food, long generation) {
+        synchronized (LOCK) {
+            if (writes.get() != generation) {
+                return;
+            }
+            if (food != null) {
+                cache.put(key, food, TTL_MILLIS);
+            } else {
+                cache.put(key, NOT_FOUND, NEGATIVE_TTL_MILLIS);
+            }
+        }
+    }
+
+    private static FoodKey keyFor(String userId, String barcode) {
+        long code = Barcodes.toKey(barcode);
+        if (code == Barcodes.INVALID || userId == null) {
+            return null;
+        }
+        try {
+            int id = Integer.parseInt(userId);
+            // userId is a string column; only the canonical spelling may share a key
+            return String.valueOf(id).equals(userId) ? new FoodKey(id, code) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record FoodKey(int userId, long code) {
+    }
+}
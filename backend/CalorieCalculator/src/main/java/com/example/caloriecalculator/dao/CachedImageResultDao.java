@@ -0,0 +1,69 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.BoundedCache;
+import com.example.caloriecalculator.helper.ImageResult;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+
+/**
+ * ImageResultDao with an in-memory tier in front of image_results, so repeated uploads of a
+ * popular photo don't touch MySQL either. Both tiers share one TTL. The memory tier reports
+ * its counters as the "imageResult" cache; the static counters below cover both tiers.
+ */
+public class CachedImageResultDao extends ImageResultDao {
+    public static final long TTL_MILLIS = Long.getLong("macrotracker.imageCache.ttlMillis", 30L * 24 * 60 * 60_000L);
+    public static final int MAX_ROWS = Integer.getInteger("macrotracker.imageCache.maxRows", 100_000);
+    private static final int MAX_SIZE = Integer.getInteger("macrotracker.imageCache.maxSize", 10_000);
+
+    private static final BoundedCache<String, ImageResult> CACHE = new BoundedCache<>("imageResult", MAX_SIZE);
+    private static final LongAdder MEMORY_HITS = new LongAdder();
+    private static final LongAdder DATABASE_HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    public CachedImageResultDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    // Looks the image up in memory, then in image_results; null when the model has to be called
+    public ImageResult find(String contentHash) throws SQLException {
+        ImageResult result = CACHE.get(contentHash);
+        if (result != null) {
+            MEMORY_HITS.increment();
+            return result;
+        }
+        result = super.find(contentHash, TTL_MILLIS);
+        if (result != null) {
+            DATABASE_HITS.increment();
+            CACHE.put(contentHash, result, TTL_MILLIS);
+        } else {
+            MISSES.increment();
+        }
+        return result;
+    }
+
+    @Override
+    public void save(String contentHash, ImageResult result) throws SQLException {
+        super.save(contentHash, result);
+        CACHE.put(contentHash, result, TTL_MILLIS);
+    }
+
+    public static long getMemoryHitCount() {
+        return MEMORY_HITS.sum();
+    }
+
+    public static long getDatabaseHitCount() {
+        return DATABASE_HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    public static double getHitRate() {
+        long hits = MEMORY_HITS.sum() + DATABASE_HITS.sum();
+        long total = hits + MISSES.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
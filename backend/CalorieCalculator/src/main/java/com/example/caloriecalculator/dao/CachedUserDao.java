@@ -0,0 +1,172 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.BoundedCache;
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.user;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+/**
+ * userdao with a write-through cache of user profiles keyed by userId. Login fills it. Profile
+ * and streak updates are merged into the cached copy once MySQL has them, so UpdateProfile reads
+ * the profile from memory. logMacro and logMacros work out the streak in the database, so they
+ * drop the entry instead.
+ *
+ * Callers get their own copy and can't change the cached one. A load that overlaps a write is
+ * not cached: loads and merges are ordered under one lock by a write counter, so an older row
+ * never replaces a merged one. Entries live for macrotracker.userCache.ttlMillis, which bounds
+ * how long another instance's writes stay invisible here. Counters are reported as the
+ * "userProfile" cache.
+ */
+public class CachedUserDao extends userdao {
+    private static final int MAX_SIZE = Integer.getInteger("macrotracker.userCache.maxSize", 50_000);
+    private static final long TTL_MILLIS = Long.getLong("macrotracker.userCache.ttlMillis", 10 * 60_000L);
+
+    private static final BoundedCache<Integer, user> CACHE = new BoundedCache<>("userProfile", MAX_SIZE);
+    private static final Object LOCK = new Object();
+    private static final AtomicLong writes = new AtomicLong();
+
+    public CachedUserDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public user findUser(String username, String password) throws SQLException {
+        long generation = writes.get();
+        user found = super.findUser(username, password);
+        if (found != null) {
+            cache(found, generation);
+        }
+        return found;
+    }
+
+    @Override
+    public user findUserById(int userId) throws SQLException {
+        user cached = CACHE.get(userId);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+        long generation = writes.get();
+        user found = super.findUserById(userId);
+        if (found != null) {
+            cache(found, generation);
+        }
+        return found;
+    }
+
+    // The full cached profile serves the streak lookup too
+    @Override
+    public user getUserById(int userId) throws SQLException {
+        return findUserById(userId);
+    }
+
+    @Override
+    public String getMemberType(int userId) throws SQLException {
+        user cached = CACHE.get(userId);
+        return cached != null ? cached.getMemberType() : super.getMemberType(userId);
+    }
+
+    @Override
+    public boolean updateUserDetails(int userId, Integer age, Double currentWeight, Double targetWeight,
+                                     Integer requiredCalories, Double height, String activityLevel,
+                                     String gender, String goalType, String profilePicture) throws SQLException {
+        boolean updated = super.updateUserDetails(userId, age, currentWeight, targetWeight,
+                requiredCalories, height, activityLevel, gender, goalType, profilePicture);
+        if (updated) {
+            synchronized (LOCK) {
+                writes.incrementAndGet();
+                user cached = CACHE.peek(userId);
+                if (cached != null) {
+                    user merged = copyOf(cached);
+                    if (age != null) merged.setAge(age);
+                    if (currentWeight != null) merged.setCurrentWeight(currentWeight);
+                    if (targetWeight != null) merged.setTargetWeight(targetWeight);
+                    if (requiredCalories != null) merged.setRequiredCalories(requiredCalories);
+                    if (height != null) merged.setHeight(height);
+                    if (activityLevel != null) merged.setActivityLevel(activityLevel);
+                    if (gender != null) merged.setGender(gender);
+                    if (goalType != null) merged.setGoalType(goalType);
+                    if (profilePicture != null) merged.setProfilePicture(profilePicture);
+                    CACHE.put(userId, merged, TTL_MILLIS);
+                }
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void updateUserStreak(int userId, int newStreak, String lastLoggedDate) throws SQLException {
+        super.updateUserStreak(userId, newStreak, lastLoggedDate);
+        synchronized (LOCK) {
+            writes.incrementAndGet();
+            user cached = CACHE.peek(userId);
+            if (cached != null) {
+                user merged = copyOf(cached);
+                merged.setStreak(newStreak);
+                merged.setLastLoggedDate(lastLoggedDate);
+                CACHE.put(userId, merged, TTL_MILLIS);
+            }
+        }
+    }
+
+    @Override
+    public boolean logMacro(int userId, String entryDate, String mealType, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
+        try {
+            return super.logMacro(userId, entryDate, mealType, calories, carbs, protein, fat);
+        } finally {
+            forget(userId);
+        }
+    }
+
+    @Override
+    public int logMacros(int userId, List<MacroEntry> entries) throws SQLException {
+        try {
+            return super.logMacros(userId, entries);
+        } finally {
+            forget(userId);
+        }
+    }
+
+    // For writes whose result only the database knows, such as the streak after a log
+    static void forget(int userId) {
+        synchronized (LOCK) {
+            writes.incrementAndGet();
+            CACHE.invalidate(userId);
+        }
+    }
+
+    // Caches a copy of a freshly loaded row unless a write finished since the load began
+    private static void cache(user loaded, long generation) {
+        synchronized (LOCK) {
+            if (writes.get() == generation) {
+                CACHE.put(loaded.getUser_id(), copyOf(loaded), TTL_MILLIS);
+            }
+        }
+    }
+
+    private static user copyOf(user source) {
+        user copy = new user();
+        copy.setUser_id(source.getUser_id());
+        copy.setUsername(source.getUsername());
+        copy.setPassword(source.getPassword());
+        copy.setDisplayName(source.getDisplayName());
+        copy.setEmail(source.getEmail());
+        copy.setAge(source.getAge());
+        copy.setCurrentWeight(source.getCurrentWeight());
+        copy.setTargetWeight(source.getTargetWeight());
+        copy.setRequiredCalories(source.getRequiredCalories());
+        copy.setHeight(source.getHeight());
+        copy.setActivityLevel(source.getActivityLevel());
+        copy.setGender(source.getGender());
+        copy.setGoalType(source.getGoalType());
+        copy.setProfilePicture(source.getProfilePicture());
+        copy.setMemberType(source.getMemberType());
+        copy.setStreak(source.getStreak());
+        copy.setLastLoggedDate(source.getLastLoggedDate());
+        return copy;
+    }
+}
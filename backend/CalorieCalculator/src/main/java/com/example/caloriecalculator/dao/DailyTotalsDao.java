@@ -0,0 +1,196 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MacroTotals;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.sql.DataSource;
+
+/**
+ * daily_totals rollup: one row per (userId, totalDate) with the summed macros and entry count.
+ *
+ * userdao.logMacro and userdao.editMacro keep it current through the static methods below,
+ * on their own connection and inside their transaction. rebuild() recomputes it from
+ * macro_entries for repair.
+ */
+public class DailyTotalsDao {
+    private final DataSource dataSource;
+
+    public DailyTotalsDao(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Adds one logged entry to the day's totals, creating the row on the first entry of the day
+    static void addEntry(Connection connection, int userId, String entryDate, int calories,
+                         BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
+        String sql = "INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount) VALUES (?, ?, ?, ?, ?, ?, 1) "
+                + "ON DUPLICATE KEY UPDATE calories = calories + VALUES(calories), carbs = carbs + VALUES(carbs), "
+                + "protein = protein + VALUES(protein), fat = fat + VALUES(fat), entryCount = entryCount + 1";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, entryDate);
+            stmt.setInt(3, calories);
+            stmt.setBigDecimal(4, carbs);
+            stmt.setBigDecimal(5, protein);
+            stmt.setBigDecimal(6, fat);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Batch form of addEntry: entries are summed per day first, so each day costs one row in the batch
+    static void addEntries(Connection connection, int userId, List<MacroEntry> entries) throws SQLException {
+        Map<String, MacroTotals> byDay = new TreeMap<>();
+        for (MacroEntry entry : entries) {
+            MacroTotals day = byDay.get(entry.getEntryDate());
+            if (day == null) {
+                day = new MacroTotals();
+                day.setEntryDate(entry.getEntryDate());
+                day.setCarbs(BigDecimal.ZERO);
+                day.setProtein(BigDecimal.ZERO);
+                day.setFat(BigDecimal.ZERO);
+                byDay.put(entry.getEntryDate(), day);
+            }
+            day.setCalories(day.getCalories() + entry.getCalories());
+            day.setCarbs(day.getCarbs().add(entry.getCarbs()));
+            day.setProtein(day.getProtein().add(entry.getProtein()));
+            day.setFat(day.getFat().add(entry.getFat()));
+            day.setEntryCount(day.getEntryCount() + 1);
+        }
+        String sql = "INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount) VALUES (?, ?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE calories = calories + VALUES(calories), carbs = carbs + VALUES(carbs), "
+                + "protein = protein + VALUES(protein), fat = fat + VALUES(fat), entryCount = entryCount + VALUES(entryCount)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (MacroTotals day : byDay.values()) {
+                stmt.setInt(1, userId);
+                stmt.setString(2, day.getEntryDate());
+                stmt.setInt(3, day.getCalories());
+                stmt.setBigDecimal(4, day.getCarbs());
+                stmt.setBigDecimal(5, day.getProtein());
+                stmt.setBigDecimal(6, day.getFat());
+                stmt.setInt(7, day.getEntryCount());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Shifts the day's totals by the difference an edit made; the entry count is unchanged
+    static void applyDelta(Connection connection, int userId, String entryDate, int calories,
+                           BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
+        String sql = "UPDATE daily_totals SET calories = calories + ?, carbs = carbs + ?, protein = protein + ?, fat = fat + ? "
+                + "WHERE userId = ? AND totalDate = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, calories);
+            stmt.setBigDecimal(2, carbs);
+            stmt.setBigDecimal(3, protein);
+            stmt.setBigDecimal(4, fat);
+            stmt.setInt(5, userId);
+            stmt.setString(6, entryDate);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Day totals plus the user's calorie goal: two primary-key lookups in one query.
+    // Totals are zero when nothing was logged that day; returns null for an unknown user.
+    public MacroTotals getDailyTotals(int userId, String date) throws SQLException {
+        String sql = "SELECT u.requiredCalories, d.calories, d.carbs, d.protein, d.fat, d.entryCount "
+                + "FROM users u LEFT JOIN daily_totals d ON d.userId = u.userId AND d.totalDate = ? WHERE u.userId = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, date);
+            stmt.setInt(2, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                MacroTotals totals = new MacroTotals();
+                totals.setEntryDate(date);
+                totals.setCalories(rs.getInt("calories"));
+                totals.setCarbs(rs.getBigDecimal("carbs") != null ? rs.getBigDecimal("carbs") : BigDecimal.ZERO);
+                totals.setProtein(rs.getBigDecimal("protein") != null ? rs.getBigDecimal("protein") : BigDecimal.ZERO);
+                totals.setFat(rs.getBigDecimal("fat") != null ? rs.getBigDecimal("fat") : BigDecimal.ZERO);
+                totals.setEntryCount(rs.getInt("entryCount"));
+                totals.setRequiredCalories(rs.getObject("requiredCalories", Integer.class));
+                return totals;
+            }
+        }
+    }
+
+    // Primary-key range scan over an inclusive date range; days with no entries are omitted
+    public List<MacroTotals> findRange(int userId, String fromDate, String toDate) throws SQLException {
+        String sql = "SELECT totalDate, calories, carbs, protein, fat, entryCount FROM daily_totals "
+                + "WHERE userId = ? AND totalDate BETWEEN ? AND ? ORDER BY totalDate";
+        List<MacroTotals> totals = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setString(2, fromDate);
+            stmt.setString(3, toDate);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.add(readTotals(rs));
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Recomputes one user's rollup from raw macro_entries in a single transaction
+    public int rebuild(int userId) throws SQLException {
+        String delete = "DELETE FROM daily_totals WHERE userId = ?";
+        String insert = "INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount) "
+                + "SELECT userId, entryDate, SUM(calories), SUM(carbs), SUM(protein), SUM(fat), COUNT(*) "
+                + "FROM macro_entries WHERE userId = ? GROUP BY userId, entryDate";
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement deleteStmt = connection.prepareStatement(delete);
+                 PreparedStatement insertStmt = connection.prepareStatement(insert)) {
+                deleteStmt.setInt(1, userId);
+                deleteStmt.executeUpdate();
+                insertStmt.setInt(1, userId);
+                int days = insertStmt.executeUpdate();
+                connection.commit();
+                return days;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Rebuilds every user's rollup, one transaction per user so locks stay short
+    public int rebuildAll() throws SQLException {
+        List<Integer> userIds = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT DISTINCT userId FROM macro_entries");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                userIds.add(rs.getInt(1));
+            }
+        }
+        int days = 0;
+        for (int userId : userIds) {
+            days += rebuild(userId);
+        }
+        return days;
+    }
+
+    private static MacroTotals readTotals(ResultSet rs) throws SQLException {
+        MacroTotals totals = new MacroTotals();
+        totals.setEntryDate(rs.getString("totalDate"));
+        totals.setCalories(rs.getInt("calories"));
+        totals.setCarbs(rs.getBigDecimal("carbs"));
+        totals.setProtein(rs.getBigDecimal("protein"));
+        totals.setFat(rs.getBigDecimal("fat"));
+        totals.setEntryCount(rs.getInt("entryCount"));
+        return totals;
+    }
+}
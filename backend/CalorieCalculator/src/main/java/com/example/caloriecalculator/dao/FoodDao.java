@@ -2,22 +2,38 @@ package com.example.caloriecalculator.dao;
 
 import com.example.caloriecalculator.helper.ScannedFood;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
+import javax.sql.DataSource;
 
+/**
+ * scanned_foods holds each user's own entries; food_catalog holds one shared entry per barcode,
+ * seeded by the first user to save it. Lookups prefer the user's entry over the catalog.
+ */
 public class FoodDao {
-    private Connection conn;
+    private static final String CATALOG_INSERT_IGNORE = "INSERT IGNORE INTO food_catalog (barcode, foodName, calories, carbs, protein, fat, createdBy) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-    public FoodDao(Connection conn) {
-        this.conn = conn;
+    private final DataSource dataSource;
+
+    public FoodDao(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
+    // The user's own entry for the barcode if they have one, otherwise the shared catalog entry
     public ScannedFood getScannedFood(String userId, String barcode) throws SQLException {
+        ScannedFood food = findUserFood(userId, barcode);
+        return food != null ? food : findCatalogFood(barcode);
+    }
+
+    public ScannedFood findUserFood(String userId, String barcode) throws SQLException {
         String query = "SELECT * FROM scanned_foods WHERE userId = ? AND barcode = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, userId);
             stmt.setString(2, barcode);
 
@@ -39,31 +55,170 @@ public class FoodDao {
         }
         return null;
     }
-    public boolean saveScannedFood(String userId, String barcode, String foodName, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
-        // Check if the food already exists
-        if (getScannedFood(userId, barcode) != null) {
-            return false; // Food already exists
+
+    public ScannedFood findCatalogFood(String barcode) throws SQLException {
+        String query = "SELECT barcode, foodName, calories, carbs, protein, fat, createdAt FROM food_catalog WHERE barcode = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, barcode);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    ScannedFood food = new ScannedFood(
+                            0,
+                            null,
+                            rs.getString("barcode"),
+                            rs.getString("foodName"),
+                            rs.getInt("calories"),
+                            rs.getBigDecimal("carbs"),
+                            rs.getBigDecimal("protein"),
+                            rs.getBigDecimal("fat"),
+                            rs.getTimestamp("createdAt")
+                    );
+                    food.setShared(true);
+                    return food;
+                }
+            }
         }
+        return null;
+    }
 
-        // Insert new food into the database
+    // Saves the user's own entry and, if nobody has catalogued the barcode yet, seeds the shared catalog with it.
+    // The unique (userId, barcode) key makes this a single atomic insert: returns false if the user already
+    // has an entry. A catalog entry alone does not block an override.
+    public boolean saveScannedFood(String userId, String barcode, String foodName, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
         String query = "INSERT INTO scanned_foods (userId, barcode, foodName, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 PreparedStatement catalogStmt = conn.prepareStatement(CATALOG_INSERT_IGNORE)) {
+                stmt.setString(1, userId);
+                stmt.setString(2, barcode);
+                stmt.setString(3, foodName);
+                stmt.setInt(4, calories);
+                stmt.setBigDecimal(5, carbs);
+                stmt.setBigDecimal(6, protein);
+                stmt.setBigDecimal(7, fat);
+                int rowsAffected = stmt.executeUpdate();
+
+                setCatalogRow(catalogStmt, barcode, foodName, calories, carbs, protein, fat, userId);
+                catalogStmt.executeUpdate();
+
+                conn.commit();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                conn.rollback();
+                if (isDuplicateKey(e)) {
+                    return false; // Food already exists
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Inserts or overwrites a batch of the user's own entries, seeding the catalog for barcodes it lacks.
+    // One JDBC batch per table, in one transaction.
+    public void upsertScannedFoods(String userId, List<ScannedFood> foods) throws SQLException {
+        String query = "INSERT INTO scanned_foods (userId, barcode, foodName, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE foodName = VALUES(foodName), calories = VALUES(calories), "
+                + "carbs = VALUES(carbs), protein = VALUES(protein), fat = VALUES(fat)";
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query);
+                 PreparedStatement catalogStmt = conn.prepareStatement(CATALOG_INSERT_IGNORE)) {
+                for (ScannedFood food : foods) {
+                    stmt.setString(1, userId);
+                    stmt.setString(2, food.getBarcode());
+                    stmt.setString(3, food.getFoodName());
+                    stmt.setInt(4, food.getCalories());
+                    stmt.setBigDecimal(5, food.getCarbs());
+                    stmt.setBigDecimal(6, food.getProtein());
+                    stmt.setBigDecimal(7, food.getFat());
+                    stmt.addBatch();
+                    setCatalogRow(catalogStmt, food.getBarcode(), food.getFoodName(), food.getCalories(),
+                            food.getCarbs(), food.getProtein(), food.getFat(), userId);
+                    catalogStmt.addBatch();
+                }
+                stmt.executeBatch();
+                catalogStmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Inserts or overwrites shared catalog entries with one JDBC batch in one transaction
+    public void upsertCatalogFoods(List<ScannedFood> foods, String createdBy) throws SQLException {
+        String query = "INSERT INTO food_catalog (barcode, foodName, calories, carbs, protein, fat, createdBy) VALUES (?, ?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE foodName = VALUES(foodName), calories = VALUES(calories), "
+                + "carbs = VALUES(carbs), protein = VALUES(protein), fat = VALUES(fat)";
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                for (ScannedFood food : foods) {
+                    setCatalogRow(stmt, food.getBarcode(), food.getFoodName(), food.getCalories(),
+                            food.getCarbs(), food.getProtein(), food.getFat(), createdBy);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void setCatalogRow(PreparedStatement stmt, String barcode, String foodName, int calories,
+                                      BigDecimal carbs, BigDecimal protein, BigDecimal fat, String createdBy) throws SQLException {
+        stmt.setString(1, barcode);
+        stmt.setString(2, foodName);
+        stmt.setInt(3, calories);
+        stmt.setBigDecimal(4, carbs);
+        stmt.setBigDecimal(5, protein);
+        stmt.setBigDecimal(6, fat);
+        stmt.setString(7, createdBy);
+    }
+
+    // MySQL reports ER_DUP_ENTRY (1062); other drivers use the standard unique-violation state
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    // Streams every food the user has scanned, oldest first, through a forward-only server-side cursor
+    public int streamScannedFoods(String userId, RowConsumer<ScannedFood> consumer) throws SQLException, IOException {
+        String query = "SELECT foodId, userId, barcode, foodName, calories, carbs, protein, fat, scannedDate FROM scanned_foods WHERE userId = ? ORDER BY scannedDate";
+        int rows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(userdao.EXPORT_FETCH_SIZE);
             stmt.setString(1, userId);
-            stmt.setString(2, barcode);
-            stmt.setString(3, foodName);
-            stmt.setInt(4, calories);
-            stmt.setBigDecimal(5, carbs);
-            stmt.setBigDecimal(6, protein);
-            stmt.setBigDecimal(7, fat);
-
-            int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new ScannedFood(
+                            rs.getInt("foodId"),
+                            rs.getString("userId"),
+                            rs.getString("barcode"),
+                            rs.getString("foodName"),
+                            rs.getInt("calories"),
+                            rs.getBigDecimal("carbs"),
+                            rs.getBigDecimal("protein"),
+                            rs.getBigDecimal("fat"),
+                            rs.getTimestamp("scannedDate")
+                    ));
+                    rows++;
+                }
+            }
         }
+        return rows;
     }
 
     public boolean checkDuplicateEntry(String userId, String barcode) throws SQLException {
         String query = "SELECT 1 FROM scanned_foods WHERE userId = ? AND barcode = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setString(1, userId);
             stmt.setString(2, barcode);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -0,0 +1,94 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.ImageResult;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import javax.sql.DataSource;
+
+/**
+ * image_results: parsed model results keyed by the SHA-256 of the decoded image bytes.
+ */
+public class ImageResultDao {
+    private final DataSource dataSource;
+
+    public ImageResultDao(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Returns the stored result if it is younger than ttlMillis, and records the hit
+    public ImageResult find(String contentHash, long ttlMillis) throws SQLException {
+        String query = "SELECT label, calories, protein, carbs, fat FROM image_results WHERE contentHash = ? AND createdAt >= ?";
+        String hit = "UPDATE image_results SET hits = hits + 1, lastHitAt = CURRENT_TIMESTAMP WHERE contentHash = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, contentHash);
+            stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis() - ttlMillis));
+            ImageResult result = null;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    result = new ImageResult(rs.getString("label"), rs.getInt("calories"),
+                            rs.getInt("protein"), rs.getInt("carbs"), rs.getInt("fat"));
+                }
+            }
+            if (result != null) {
+                try (PreparedStatement hitStmt = connection.prepareStatement(hit)) {
+                    hitStmt.setString(1, contentHash);
+                    hitStmt.executeUpdate();
+                }
+            }
+            return result;
+        }
+    }
+
+    // Stores (or refreshes) the result for an image
+    public void save(String contentHash, ImageResult result) throws SQLException {
+        String sql = "INSERT INTO image_results (contentHash, label, calories, protein, carbs, fat) VALUES (?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE label = VALUES(label), calories = VALUES(calories), protein = VALUES(protein), "
+                + "carbs = VALUES(carbs), fat = VALUES(fat), createdAt = CURRENT_TIMESTAMP";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, contentHash);
+            stmt.setString(2, result.getLabel());
+            stmt.setInt(3, result.getCalories());
+            stmt.setInt(4, result.getProtein());
+            stmt.setInt(5, result.getCarbs());
+            stmt.setInt(6, result.getFat());
+            stmt.executeUpdate();
+        }
+    }
+
+    // Deletes expired rows, then the least recently used ones beyond maxRows; returns rows removed
+    public int prune(long ttlMillis, int maxRows) throws SQLException {
+        String expired = "DELETE FROM image_results WHERE createdAt < ?";
+        // Last-use time of the maxRows-th most recently used row; anything used earlier goes
+        String cutoff = "SELECT COALESCE(lastHitAt, createdAt) AS lastUsed FROM image_results ORDER BY lastUsed DESC LIMIT 1 OFFSET ?";
+        String overflow = "DELETE FROM image_results WHERE COALESCE(lastHitAt, createdAt) < ?";
+        try (Connection connection = dataSource.getConnection()) {
+            int removed;
+            try (PreparedStatement stmt = connection.prepareStatement(expired)) {
+                stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - ttlMillis));
+                removed = stmt.executeUpdate();
+            }
+            Timestamp oldestKept = null;
+            try (PreparedStatement stmt = connection.prepareStatement(cutoff)) {
+                stmt.setInt(1, Math.max(0, maxRows - 1));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        oldestKept = rs.getTimestamp(1);
+                    }
+                }
+            }
+            if (oldestKept != null) {
+                try (PreparedStatement stmt = connection.prepareStatement(overflow)) {
+                    stmt.setTimestamp(1, oldestKept);
+                    removed += stmt.executeUpdate();
+                }
+            }
+            return removed;
+        }
+    }
+}
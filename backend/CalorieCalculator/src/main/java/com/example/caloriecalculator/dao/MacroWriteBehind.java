@@ -0,0 +1,552 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import com.example.caloriecalculator.helper.WriteAheadLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Optional write-behind for /LogMacro, on with -Dmacrotracker.writeBehind.enabled=true. An entry
+ * is acknowledged once it is in a local {@link WriteAheadLog}, which is group-committed every
+ * macrotracker.writeBehind.groupCommitMillis. A background thread applies entries to MySQL in
+ * batches of up to batchSize. While MySQL is slow or down, requests only wait for the local
+ * fsync, and entries queue up.
+ *
+ * Each batch is one transaction. It runs userdao.logMacros for every run of same-day entries per
+ * user, which gives the same streaks as logging them one by one, and then records the batch's
+ * last sequence in macro_log_checkpoints. On startup the log is replayed and anything at or below
+ * the checkpoint is skipped, so each entry reaches MySQL exactly once.
+ *
+ * Entries show up in reads once drained, normally a few milliseconds later. With more than
+ * maxPending entries waiting, or while stopping, log() returns false and the caller logs
+ * synchronously. It must call {@link #awaitApplied} first: the streak update ignores entries older
+ * than the user's last logged date, so a direct write may not overtake that user's queued
+ * entries. An entry
+ * MySQL refuses outright, such as one for an unknown user, is logged and skipped so it can't
+ * hold up the rest.
+ *
+ * If the log fails after an entry was written to it but before the fsync, log() throws
+ * {@link NotDurable}. The entry may still be replayed on the next start, so the caller must not
+ * write it a second time. After {@link #shutdown} get() returns null, and requests still arriving
+ * during undeploy are logged synchronously.
+ */
+public final class MacroWriteBehind {
+    private static final Logger LOGGER = Logger.getLogger(MacroWriteBehind.class.getName());
+
+    private static final boolean ENABLED = Boolean.getBoolean("macrotracker.writeBehind.enabled");
+    private static final Path DIR = Paths.get(System.getProperty("macrotracker.writeBehind.dir",
+            Paths.get(System.getProperty("user.home"), "macrotracker-wal").toString()));
+    private static final long SEGMENT_BYTES = Long.getLong("macrotracker.writeBehind.segmentBytes", 16L << 20);
+    private static final long GROUP_COMMIT_MILLIS = Long.getLong("macrotracker.writeBehind.groupCommitMillis", 5L);
+    private static final int BATCH_SIZE = Integer.getInteger("macrotracker.writeBehind.batchSize", 500);
+    private static final int MAX_PENDING = Integer.getInteger("macrotracker.writeBehind.maxPending", 100_000);
+    private static final long MAX_RETRY_MILLIS = Long.getLong("macrotracker.writeBehind.maxRetryMillis", 5_000L);
+    private static final long SHUTDOWN_MILLIS = Long.getLong("macrotracker.writeBehind.shutdownMillis", 10_000L);
+    private static final long FALLBACK_WAIT_MILLIS = Long.getLong("macrotracker.writeBehind.fallbackWaitMillis", 2_000L);
+
+    private static volatile MacroWriteBehind instance;
+    private static volatile boolean stopped;
+    // Users with entries still in the log when it was shut down; they are applied on the next start
+    private static volatile Set<Integer> leftBehind = Set.of();
+
+    private static final AtomicLong appended = new AtomicLong();
+    private static final AtomicLong replayed = new AtomicLong();
+    private static final AtomicLong applied = new AtomicLong();
+    private static final AtomicLong batches = new AtomicLong();
+    private static final AtomicLong drainFailures = new AtomicLong();
+    private static final AtomicLong skipped = new AtomicLong();
+    private static final AtomicLong overflows = new AtomicLong();
+    private static final AtomicLong appendNanos = new AtomicLong();
+    private static final AtomicLong maxAppendNanos = new AtomicLong();
+    private static final AtomicLong lagNanos = new AtomicLong();
+    private static final AtomicLong maxLagNanos = new AtomicLong();
+
+    private final DataSource dataSource;
+    private final String logId;
+    private final WriteAheadLog log;
+    // Entries in sequence order, guarded by itself
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    // How many of the pending entries belong to each user, guarded by pending
+    private final Map<Integer, Integer> pendingByUser = new HashMap<>();
+    private final Thread drainer;
+    private volatile boolean stopping;
+    private volatile long checkpoint = -1; // unknown until read from MySQL
+
+    private static final class Pending {
+        final long sequence;
+        final MacroEntry entry;
+        final long queuedAt = System.nanoTime();
+
+        Pending(long sequence, MacroEntry entry) {
+            this.sequence = sequence;
+            this.entry = entry;
+        }
+    }
+
+    private MacroWriteBehind(DataSource dataSource, Path dir) throws IOException {
+        this.dataSource = dataSource;
+        this.logId = WriteAheadLog.idOf(dir);
+        this.log = WriteAheadLog.open(dir, SEGMENT_BYTES, GROUP_COMMIT_MILLIS, (sequence, payload) -> {
+            synchronized (pending) {
+                enqueue(new Pending(sequence, decode(payload)));
+            }
+            replayed.incrementAndGet();
+        });
+        if (!pending.isEmpty()) {
+            LOGGER.info("Replaying " + pending.size() + " logged macro entries from " + dir);
+        }
+        this.drainer = new Thread(this::drainLoop, "macro-write-behind");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    // The running instance, recovering the log on first use; null once shut down
+    public static MacroWriteBehind get() throws IOException {
+        MacroWriteBehind current = instance;
+        if (current == null) {
+            synchronized (MacroWriteBehind.class) {
+                current = instance;
+                if (current == null && !stopped) {
+                    current = new MacroWriteBehind(MySQLConnection.getDataSource(), DIR);
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Makes the entry durable in the local log and queues it for MySQL; false if the queue is
+    // full and the caller should log it synchronously instead. Throws NotDurable once the entry
+    // is in the log but its fsync failed; any other IOException means it was never logged.
+    public boolean log(int userId, String entryDate, String mealType, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws IOException {
+        LocalDate.parse(entryDate); // bad dates fail here, not in the drainer
+        MacroEntry entry = new MacroEntry();
+        entry.setUserId(userId);
+        entry.setEntryDate(entryDate);
+        entry.setMealType(mealType);
+        entry.setCalories(calories);
+        entry.setCarbs(carbs);
+        entry.setProtein(protein);
+        entry.setFat(fat);
+
+        synchronized (pending) {
+            if (stopping || pending.size() >= MAX_PENDING) {
+                overflows.incrementAndGet();
+                return false;
+            }
+        }
+        byte[] payload = encode(entry);
+        long start = System.nanoTime();
+        AtomicLong assigned = new AtomicLong(-1);
+        try {
+            log.append(payload, sequence -> {
+                assigned.set(sequence);
+                synchronized (pending) {
+                    enqueue(new Pending(sequence, entry));
+                }
+            });
+        } catch (IOException e) {
+            if (assigned.get() >= 0) {
+                throw new NotDurable(assigned.get(), e);
+            }
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        appended.incrementAndGet();
+        appendNanos.addAndGet(elapsed);
+        maxAppendNanos.accumulateAndGet(elapsed, Math::max);
+        synchronized (pending) {
+            pending.notifyAll();
+        }
+        return true;
+    }
+
+    // True once none of userId's entries are waiting for MySQL, giving the drainer up to
+    // fallbackWaitMillis to apply them. Only then may the caller write one for that user directly.
+    public static boolean awaitApplied(int userId) {
+        MacroWriteBehind current = instance;
+        if (current == null) {
+            return !leftBehind.contains(userId);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FALLBACK_WAIT_MILLIS);
+        synchronized (current.pending) {
+            while (current.pendingByUser.containsKey(userId)) {
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (waitMillis <= 0) {
+                    return false;
+                }
+                try {
+                    current.pending.wait(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Caller holds the pending lock
+    private void enqueue(Pending next) {
+        pending.add(next);
+        pendingByUser.merge(next.entry.getUserId(), 1, Integer::sum);
+    }
+
+    // Caller holds the pending lock
+    private void dequeueFirst() {
+        Pending done = pending.pollFirst();
+        pendingByUser.computeIfPresent(done.entry.getUserId(), (userId, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void drainLoop() {
+        long retryMillis = 100;
+        while (true) {
+            List<Pending> batch;
+            try {
+                if (checkpoint < 0) {
+                    checkpoint = readCheckpoint();
+                }
+                batch = nextBatch();
+                if (batch == null) {
+                    return; // stopping and nothing left that can be applied
+                }
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+                retryMillis = 100;
+            } catch (SQLException e) {
+                drainFailures.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Write-behind drain failed, retrying in " + retryMillis + " ms: " + e.getMessage());
+                if (stopping) {
+                    return; // left in the log for the next start
+                }
+                sleep(retryMillis);
+                retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Write-behind drainer failed", e);
+                sleep(retryMillis);
+            }
+        }
+    }
+
+    // Up to BATCH_SIZE durable entries past the checkpoint, still queued; null once stopped and drained
+    private List<Pending> nextBatch() {
+        synchronized (pending) {
+            while (true) {
+                boolean skippedApplied = false;
+                while (!pending.isEmpty() && pending.peekFirst().sequence <= checkpoint) {
+                    dequeueFirst(); // applied before the last restart
+                    skippedApplied = true;
+                }
+                if (skippedApplied) {
+                    pending.notifyAll();
+                }
+                long durable = log.getDurableSequence();
+                List<Pending> batch = new ArrayList<>();
+                for (Pending next : pending) {
+                    if (next.sequence > durable || batch.size() == BATCH_SIZE) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (!batch.isEmpty()) {
+                    return batch;
+                }
+                if (stopping && pending.isEmpty()) {
+                    return null;
+                }
+                try {
+                    pending.wait(GROUP_COMMIT_MILLIS);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void apply(List<Pending> batch) throws SQLException {
+        try {
+            write(batch);
+        } catch (SQLException e) {
+            if (!isRefused(e)) {
+                throw e;
+            }
+            // Something in the batch is refused; apply entries one at a time and skip the bad ones
+            for (Pending one : batch) {
+                try {
+                    write(List.of(one));
+                } catch (SQLException single) {
+                    if (!isRefused(single)) {
+                        throw single;
+                    }
+                    skipped.incrementAndGet();
+                    LOGGER.log(Level.SEVERE, "Skipping logged macro entry " + one.sequence + " for user "
+                            + one.entry.getUserId() + ": " + single.getMessage());
+                    writeCheckpoint(one.sequence);
+                    finish(List.of(one));
+                }
+            }
+            return;
+        }
+        batches.incrementAndGet();
+    }
+
+    // One transaction: the batch's entries, rollups and streaks, then the checkpoint
+    private void write(List<Pending> batch) throws SQLException {
+        // By user (in id order, so concurrent writers lock users rows the same way), then log order
+        Map<Integer, List<MacroEntry>> byUser = new TreeMap<>();
+        for (Pending next : batch) {
+            byUser.computeIfAbsent(next.entry.getUserId(), id -> new ArrayList<>()).add(next.entry);
+        }
+        long last = batch.get(batch.size() - 1).sequence;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<Integer, List<MacroEntry>> user : byUser.entrySet()) {
+                    List<MacroEntry> entries = user.getValue();
+                    int start = 0;
+                    for (int i = 1; i <= entries.size(); i++) {
+                        if (i == entries.size() || !entries.get(i).getEntryDate().equals(entries.get(start).getEntryDate())) {
+                            if (userdao.logMacros(connection, user.getKey(), entries.subList(start, i)) < 0) {
+                                throw new SQLException("No such user " + user.getKey(), "23000");
+                            }
+                            start = i;
+                        }
+                    }
+                }
+                upsertCheckpoint(connection, last);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        checkpoint = last;
+        for (Integer userId : byUser.keySet()) {
+            CachedUserDao.forget(userId);
+        }
+        applied.addAndGet(batch.size());
+        finish(batch);
+    }
+
+    private void finish(List<Pending> batch) {
+        long now = System.nanoTime();
+        synchronized (pending) {
+            for (Pending done : batch) {
+                if (pending.peekFirst() == done) {
+                    dequeueFirst();
+                }
+                long lag = now - done.queuedAt;
+                lagNanos.addAndGet(lag);
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+            }
+            pending.notifyAll();
+        }
+        log.release(batch.get(batch.size() - 1).sequence);
+    }
+
+    private long readCheckpoint() throws SQLException {
+        String query = "SELECT lastSequence FROM macro_log_checkpoints WHERE logId = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, logId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong("lastSequence") : 0;
+            }
+        }
+    }
+
+    private void writeCheckpoint(long sequence) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            upsertCheckpoint(connection, sequence);
+        }
+        checkpoint = sequence;
+    }
+
+    private void upsertCheckpoint(Connection connection, long sequence) throws SQLException {
+        String sql = "INSERT INTO macro_log_checkpoints (logId, lastSequence) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE lastSequence = VALUES(lastSequence), updatedAt = CURRENT_TIMESTAMP";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, logId);
+            stmt.setLong(2, sequence);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Refused for its data (SQLState class 22 or 23), so retrying it as it is won't help. Anything
+    // else, such as a lost connection, a deadlock or a missing table, is retried.
+    private static boolean isRefused(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    private static byte[] encode(MacroEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(entry.getUserId());
+            out.writeUTF(entry.getEntryDate());
+            out.writeUTF(entry.getMealType() != null ? entry.getMealType() : "");
+            out.writeBoolean(entry.getMealType() != null);
+            out.writeInt(entry.getCalories());
+            out.writeUTF(entry.getCarbs().toPlainString());
+            out.writeUTF(entry.getProtein().toPlainString());
+            out.writeUTF(entry.getFat().toPlainString());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static MacroEntry decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            MacroEntry entry = new MacroEntry();
+            entry.setUserId(in.readInt());
+            entry.setEntryDate(in.readUTF());
+            String mealType = in.readUTF();
+            entry.setMealType(in.readBoolean() ? mealType : null);
+            entry.setCalories(in.readInt());
+            entry.setCarbs(new BigDecimal(in.readUTF()));
+            entry.setProtein(new BigDecimal(in.readUTF()));
+            entry.setFat(new BigDecimal(in.readUTF()));
+            return entry;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Stops taking entries, gives the drainer up to shutdownMillis to catch up and closes the log.
+    // Whatever is left is replayed on the next start. The instance stays visible until then so
+    // awaitApplied still sees what is queued.
+    public static synchronized void shutdown() {
+        stopped = true;
+        MacroWriteBehind current = instance;
+        if (current == null) {
+            return;
+        }
+        synchronized (current.pending) {
+            current.stopping = true;
+            current.pending.notifyAll();
+        }
+        try {
+            current.drainer.join(SHUTDOWN_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.drainer.interrupt();
+        current.log.close();
+        synchronized (current.pending) {
+            leftBehind = Set.copyOf(current.pendingByUser.keySet());
+        }
+        instance = null;
+        LOGGER.info("Macro write-behind stopped with " + current.pending.size() + " entries left in the log");
+    }
+
+    // The entry is in the log, so it may still be applied on the next start, but it was never made
+    // durable. Writing it again some other way could apply it twice.
+    public static class NotDurable extends IOException {
+        private final long sequence;
+
+        NotDurable(long sequence, IOException cause) {
+            super("Logged macro entry " + sequence + " was not synced", cause);
+            this.sequence = sequence;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    public static int getPendingCount() {
+        MacroWriteBehind current = instance;
+        if (current == null) {
+            return 0;
+        }
+        synchronized (current.pending) {
+            return current.pending.size();
+        }
+    }
+
+    public static int getSegmentCount() {
+        MacroWriteBehind current = instance;
+        return current == null ? 0 : current.log.getSegmentCount();
+    }
+
+    public static long getAppendedCount() {
+        return appended.get();
+    }
+
+    public static long getReplayedCount() {
+        return replayed.get();
+    }
+
+    public static long getAppliedCount() {
+        return applied.get();
+    }
+
+    public static long getBatchCount() {
+        return batches.get();
+    }
+
+    public static long getDrainFailureCount() {
+        return drainFailures.get();
+    }
+
+    public static long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public static long getOverflowCount() {
+        return overflows.get();
+    }
+
+    public static double getAverageAppendMillis() {
+        long count = appended.get();
+        return count == 0 ? 0.0 : appendNanos.get() / 1_000_000.0 / count;
+    }
+
+    public static double getMaxAppendMillis() {
+        return maxAppendNanos.get() / 1_000_000.0;
+    }
+
+    public static double getAverageLagMillis() {
+        long count = applied.get() + skipped.get();
+        return count == 0 ? 0.0 : lagNanos.get() / 1_000_000.0 / count;
+    }
+
+    public static double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+}
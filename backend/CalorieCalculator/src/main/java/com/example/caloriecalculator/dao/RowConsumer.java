@@ -0,0 +1,9 @@
+package com.example.caloriecalculator.dao;
+
+import java.io.IOException;
+
+// Receives rows one at a time from a streaming DAO query
+@FunctionalInterface
+public interface RowConsumer<T> {
+    void accept(T row) throws IOException;
+}
@@ -0,0 +1,151 @@
+package com.example.caloriecalculator.dao;
+
+import com.example.caloriecalculator.helper.BoundedCache;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Daily image upload allowance per user, counted in memory so checking it, and refusing an
+ * upload, costs no query.
+ *
+ * Counters are AtomicIntegers keyed by (imageDate, userId) in concurrent maps, one map per day.
+ * A day's map is seeded from image_queries the first time it is used. That covers both startup
+ * and the day rollover, when maps for days that have fallen out of the window are dropped. Only
+ * dates within a day of the server's date are tracked, which covers every client time zone.
+ * Backdated uploads are counted in the database as before. The counts are per JVM; with several
+ * instances each one enforces the limit on its own.
+ *
+ * The limit depends on users.memberType: macrotracker.uploadQuota.&lt;memberType&gt;, lower-cased.
+ * The defaults are 4 for free and 20 for premium, and unknown types get the free limit. Member
+ * types are cached for macrotracker.uploadQuota.memberTypeTtlMillis.
+ */
+public class UploadQuota {
+    private static final Logger LOGGER = Logger.getLogger(UploadQuota.class.getName());
+
+    private static final Map<String, Integer> DEFAULT_LIMITS = Map.of("free", 4, "premium", 20);
+    private static final long MEMBER_TYPE_TTL_MILLIS = Long.getLong("macrotracker.uploadQuota.memberTypeTtlMillis", 10 * 60_000L);
+    private static final int TRACKED_DAYS = 1; // either side of today
+
+    // Cached for users without a row, so the key still counts as a hit
+    private static final String UNKNOWN_USER = "";
+
+    private static final ConcurrentHashMap<LocalDate, ConcurrentHashMap<Integer, AtomicInteger>> DAYS = new ConcurrentHashMap<>();
+    private static final BoundedCache<Integer, String> MEMBER_TYPES = new BoundedCache<>("memberType", 50_000);
+
+    private static final AtomicLong granted = new AtomicLong();
+    private static final AtomicLong refused = new AtomicLong();
+    private static final AtomicLong databaseChecks = new AtomicLong();
+
+    private final imagedao imageDao;
+    private final userdao userDao;
+
+    public UploadQuota(DataSource dataSource) {
+        this.imageDao = new imagedao(dataSource);
+        this.userDao = new userdao(dataSource);
+    }
+
+    // Takes one upload from the user's allowance for entryDate; false if it is used up.
+    // Hand it back with release() if the upload ends up not being recorded.
+    public boolean tryAcquire(int userId, String entryDate) throws SQLException {
+        int limit = limitFor(memberType(userId));
+        ConcurrentHashMap<Integer, AtomicInteger> day = counters(LocalDate.parse(entryDate));
+        boolean allowed;
+        if (day == null) {
+            databaseChecks.incrementAndGet();
+            allowed = imageDao.getUploadCountForDate(userId, entryDate) < limit;
+        } else {
+            AtomicInteger count = day.computeIfAbsent(userId, id -> new AtomicInteger());
+            allowed = count.incrementAndGet() <= limit;
+            if (!allowed) {
+                count.decrementAndGet();
+            }
+        }
+        (allowed ? granted : refused).incrementAndGet();
+        return allowed;
+    }
+
+    public void release(int userId, String entryDate) {
+        ConcurrentHashMap<Integer, AtomicInteger> day = DAYS.get(LocalDate.parse(entryDate));
+        AtomicInteger count = day != null ? day.get(userId) : null;
+        if (count != null) {
+            count.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    public static int limitFor(String memberType) {
+        String type = memberType == null || memberType.isEmpty() ? "free" : memberType.toLowerCase(Locale.ROOT);
+        Integer configured = Integer.getInteger("macrotracker.uploadQuota." + type);
+        if (configured != null) {
+            return configured;
+        }
+        return DEFAULT_LIMITS.containsKey(type) ? DEFAULT_LIMITS.get(type) : limitFor("free");
+    }
+
+    private String memberType(int userId) throws SQLException {
+        String memberType = MEMBER_TYPES.get(userId);
+        if (memberType == null) {
+            memberType = userDao.getMemberType(userId);
+            if (memberType == null) {
+                memberType = UNKNOWN_USER;
+            }
+            MEMBER_TYPES.put(userId, memberType, MEMBER_TYPE_TTL_MILLIS);
+        }
+        return memberType;
+    }
+
+    // The day's counters, seeded from the database on first use; null if the date is not tracked
+    private ConcurrentHashMap<Integer, AtomicInteger> counters(LocalDate date) throws SQLException {
+        LocalDate today = LocalDate.now();
+        if (date.isBefore(today.minusDays(TRACKED_DAYS)) || date.isAfter(today.plusDays(TRACKED_DAYS))) {
+            return null;
+        }
+        ConcurrentHashMap<Integer, AtomicInteger> day = DAYS.get(date);
+        if (day == null) {
+            synchronized (DAYS) {
+                day = DAYS.get(date);
+                if (day == null) {
+                    day = new ConcurrentHashMap<>();
+                    for (Map.Entry<Integer, Integer> entry : imageDao.getUploadCountsForDate(date.toString()).entrySet()) {
+                        day.put(entry.getKey(), new AtomicInteger(entry.getValue()));
+                    }
+                    DAYS.put(date, day);
+                    DAYS.keySet().removeIf(d -> d.isBefore(today.minusDays(TRACKED_DAYS)));
+                    LOGGER.fine("Upload quota for " + date + " seeded with " + day.size() + " users");
+                }
+            }
+        }
+        return day;
+    }
+
+    public static int getTrackedDays() {
+        return DAYS.size();
+    }
+
+    public static int getTrackedUsers() {
+        int users = 0;
+        for (ConcurrentHashMap<Integer, AtomicInteger> day : DAYS.values()) {
+            users += day.size();
+        }
+        return users;
+    }
+
+    public static long getGrantedCount() {
+        return granted.get();
+    }
+
+    public static long getRefusedCount() {
+        return refused.get();
+    }
+
+    public static long getDatabaseCheckCount() {
+        return databaseChecks.get();
+    }
+}
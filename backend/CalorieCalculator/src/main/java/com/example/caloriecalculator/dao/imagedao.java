@@ -1,37 +1,80 @@
 package com.example.caloriecalculator.dao;
 
+import com.example.caloriecalculator.helper.ImageStore;
+import com.example.caloriecalculator.helper.ImageUpload;
 import com.example.caloriecalculator.helper.image;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
 
+/**
+ * image_queries rows. The photo itself lives in the {@link ImageStore}; a row only records its
+ * contentHash, imageSize and mimeType (base64Input is left NULL).
+ */
 public class imagedao {
-    private final Connection connection;
+    private static final String INSERT_QUERY = "INSERT INTO image_queries (userId, contentHash, imageSize, mimeType, gptResponse, sentAt, imageDate) VALUES (?, ?, ?, ?, ?, NOW(), ?)";
+    private static final Logger LOGGER = Logger.getLogger(imagedao.class.getName());
+    private static final String UNKNOWN_MIME_TYPE = "application/octet-stream";
 
-    public imagedao(Connection connection) {
-        this.connection = connection;
+    private final DataSource dataSource;
+    private final ImageStore imageStore;
+
+    public imagedao(DataSource dataSource) {
+        this(dataSource, ImageStore.getDefault());
     }
 
-    // 1. Save a new image entry
-    public boolean saveImage(int userId, String entryDate, String imageData, String gptResponse) throws SQLException {
-        String sql = "INSERT INTO image_queries (userId, base64Input, gptResponse, sentAt, imageDate) VALUES (?, ?, ?, NOW(), ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setString(2, imageData); // this is base64Input
-            stmt.setString(3, gptResponse);
-            stmt.setString(4, entryDate); // used as imageDate
-            int rowsInserted = stmt.executeUpdate();
-            return rowsInserted > 0;
+    public imagedao(DataSource dataSource, ImageStore imageStore) {
+        this.dataSource = dataSource;
+        this.imageStore = imageStore;
+    }
+
+    // Writes the upload to the image store (once per distinct photo) and returns the file for the model call
+    public Path storeImage(ImageUpload image) throws IOException {
+        return imageStore.put(image.sha256(), image.getMimeType(), image.data());
+    }
+
+    // 1. Save a new image entry from base64 text (legacy callers)
+    public boolean saveImage(int userId, String entryDate, String imageData, String gptResponse) throws SQLException, IOException {
+        byte[] bytes = Base64.getDecoder().decode(imageData);
+        String mimeType = mimeTypeOf(bytes);
+        String contentHash = ImageStore.sha256(ByteBuffer.wrap(bytes));
+        imageStore.put(contentHash, mimeType, ByteBuffer.wrap(bytes));
+        try (Connection connection = dataSource.getConnection()) {
+            return insertQuery(connection, userId, contentHash, bytes.length, mimeType, gptResponse, entryDate) > 0;
+        }
+    }
+
+    // Same as saveImage, for an upload already held off-heap; the store write is skipped if storeImage ran
+    public boolean saveImage(int userId, String entryDate, ImageUpload image, String gptResponse) throws SQLException, IOException {
+        storeImage(image);
+        return saveStoredImage(userId, entryDate, image.sha256(), image.size(), image.getMimeType(), gptResponse);
+    }
+
+    // The image_queries row for an image storeImage already wrote, once its upload has been closed
+    public boolean saveStoredImage(int userId, String entryDate, String contentHash, int size, String mimeType,
+                                   String gptResponse) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return insertQuery(connection, userId, contentHash, size, mimeType, gptResponse, entryDate) > 0;
         }
     }
 
     // 2. Get number of uploads for a user for a specific date
     public int getUploadCountForDate(int userId, String entryDate) throws SQLException {
         String sql = "SELECT COUNT(*) FROM image_queries WHERE userId = ? AND imageDate = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setString(2, entryDate);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -42,12 +85,29 @@ public class imagedao {
         }
         return 0;
     }
+    // Uploads per user for one date, for seeding the in-memory quota counters
+    public Map<Integer, Integer> getUploadCountsForDate(String entryDate) throws SQLException {
+        String sql = "SELECT userId, COUNT(*) FROM image_queries WHERE imageDate = ? GROUP BY userId";
+        Map<Integer, Integer> counts = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, entryDate);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+        return counts;
+    }
+
     /*
     // 3. Fetch all uploaded images for a specific user and date
     public ArrayList<image> getImagesByUserAndDate(int userId, String entryDate) throws SQLException {
         ArrayList<image> images = new ArrayList<>();
         String sql = "SELECT imageId, userId, entryDate, imageUrl, label, calories, mealType FROM image_queries WHERE userId = ? AND entryDate = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setString(2, entryDate);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -72,20 +132,110 @@ public class imagedao {
     // 4. Delete an uploaded image using imageId
     public boolean deleteImageById(int imageId) throws SQLException {
         String sql = "DELETE FROM image_queries WHERE queryId = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, imageId);
             int rowsDeleted = stmt.executeUpdate();
             return rowsDeleted > 0;
         }
     }
 
-    public static void storeImageQueryResult(Connection conn, int userId, String base64Input, String gptResponse) throws SQLException {
-        String sql = "INSERT INTO image_queries (userId, base64Input, gptResponse, sentAt) VALUES (?, ?, ?, NOW())";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Moves rows still holding base64Input into the image store, batchSize rows per transaction.
+    // Each file is on disk before its row is updated, so this can be stopped and rerun at any point.
+    // Rows that do not decode are logged and left as they are. Returns the number of rows moved.
+    public int moveImagesToStore(int batchSize) throws SQLException, IOException {
+        String selectIds = "SELECT queryId FROM image_queries WHERE base64Input IS NOT NULL AND queryId > ? ORDER BY queryId LIMIT ?";
+        String selectImage = "SELECT base64Input FROM image_queries WHERE queryId = ?";
+        String update = "UPDATE image_queries SET contentHash = ?, imageSize = ?, mimeType = ?, base64Input = NULL WHERE queryId = ?";
+
+        int moved = 0;
+        int lastId = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            while (true) {
+                // Ids first, then one image at a time, so only a single photo is ever held in memory
+                List<Integer> ids = new ArrayList<>();
+                try (PreparedStatement stmt = connection.prepareStatement(selectIds)) {
+                    stmt.setInt(1, lastId);
+                    stmt.setInt(2, batchSize);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    return moved;
+                }
+                lastId = ids.get(ids.size() - 1);
+
+                connection.setAutoCommit(false);
+                try (PreparedStatement read = connection.prepareStatement(selectImage);
+                     PreparedStatement write = connection.prepareStatement(update)) {
+                    int batched = 0;
+                    for (int queryId : ids) {
+                        String base64Input;
+                        read.setInt(1, queryId);
+                        try (ResultSet rs = read.executeQuery()) {
+                            base64Input = rs.next() ? rs.getString(1) : null;
+                        }
+                        if (base64Input == null) {
+                            continue;
+                        }
+                        byte[] bytes;
+                        try {
+                            bytes = Base64.getDecoder().decode(base64Input);
+                        } catch (IllegalArgumentException e) {
+                            LOGGER.warning("image_queries " + queryId + ": base64Input does not decode, left in place");
+                            continue;
+                        }
+                        String mimeType = mimeTypeOf(bytes);
+                        String contentHash = ImageStore.sha256(ByteBuffer.wrap(bytes));
+                        imageStore.put(contentHash, mimeType, ByteBuffer.wrap(bytes));
+
+                        write.setString(1, contentHash);
+                        write.setInt(2, bytes.length);
+                        write.setString(3, mimeType);
+                        write.setInt(4, queryId);
+                        write.addBatch();
+                        batched++;
+                    }
+                    write.executeBatch();
+                    connection.commit();
+                    moved += batched;
+                } catch (SQLException | IOException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    public static void storeImageQueryResult(Connection conn, int userId, String base64Input, String gptResponse) throws SQLException, IOException {
+        byte[] bytes = Base64.getDecoder().decode(base64Input);
+        String mimeType = mimeTypeOf(bytes);
+        String contentHash = ImageStore.sha256(ByteBuffer.wrap(bytes));
+        ImageStore.getDefault().put(contentHash, mimeType, ByteBuffer.wrap(bytes));
+        insertQuery(conn, userId, contentHash, bytes.length, mimeType, gptResponse, null);
+    }
+
+    // Image rows are only inserted after the image itself is safely in the store
+    private static int insertQuery(Connection conn, int userId, String contentHash, int imageSize, String mimeType,
+                                   String gptResponse, String entryDate) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_QUERY)) {
             stmt.setInt(1, userId);
-            stmt.setString(2, base64Input); // rename imageName to base64Input in parameter name and usage
-            stmt.setString(3, gptResponse); // Store raw response
-            stmt.executeUpdate();
+            stmt.setString(2, contentHash);
+            stmt.setInt(3, imageSize);
+            stmt.setString(4, mimeType);
+            stmt.setString(5, gptResponse); // Store raw response
+            stmt.setString(6, entryDate); // used as imageDate
+            return stmt.executeUpdate();
         }
     }
-}
\ No newline at end of file
+
+    private static String mimeTypeOf(byte[] bytes) {
+        String mimeType = ImageUpload.mimeTypeOf(bytes);
+        return mimeType != null ? mimeType : UNKNOWN_MIME_TYPE;
+    }
+}
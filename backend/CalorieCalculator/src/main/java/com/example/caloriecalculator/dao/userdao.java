@@ -1,61 +1,96 @@
 package com.example.caloriecalculator.dao;
 
-import com.example.caloriecalculator.helper.MySQLConnection;
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MacroTotals;
+import com.example.caloriecalculator.helper.Passwords;
 import com.example.caloriecalculator.helper.user;
-import org.mindrot.jbcrypt.BCrypt; // Add this library for password hashing
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
 
 public class userdao {
-    private final Connection connection;
+    // Rows per round trip when streaming exports
+    static final int EXPORT_FETCH_SIZE = 500;
 
-    public userdao(Connection connection) {
-        this.connection = connection;
+    // Columns updateUserDetails can set, in parameter order; bit i of its field mask is column i
+    private static final String[] PROFILE_COLUMNS = {"age", "currentWeight", "targetWeight", "requiredCalories",
+            "height", "activityLevel", "gender", "goalType", "profilePicture"};
+    // The UPDATE for every field mask, built once so equal updates reuse one pooled prepared statement
+    private static final String[] PROFILE_UPDATE_SQL = profileUpdateSql();
+
+    private final DataSource dataSource;
+
+    public userdao(DataSource dataSource) {
+        this.dataSource = dataSource;
     }
 
     // Find user by username and verify password
     public user findUser(String username, String password) throws SQLException {
         String query = "SELECT * FROM users WHERE username=?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             try (ResultSet rs = statement.executeQuery()) {
                 if (rs.next()) {
                     String hashedPassword = rs.getString("password");
-                    if (BCrypt.checkpw(password, hashedPassword)) { // Verify password
-                        user user = new user();
-                        user.setUser_id(rs.getInt("userId"));
-                        user.setUsername(rs.getString("username"));
-                        user.setPassword(hashedPassword); // Return the hashed password
-                        user.setEmail(rs.getString("email"));
-
-                        // Handle nullable fields using wrapper classes
-                        user.setAge(rs.getObject("age", Integer.class)); // Will return null if age is null
-                        user.setCurrentWeight(rs.getObject("currentWeight", Double.class)); // Will return null if currentWeight is null
-                        user.setTargetWeight(rs.getObject("targetWeight", Double.class)); // Will return null if targetWeight is null
-                        user.setRequiredCalories(rs.getObject("requiredCalories", Integer.class)); // Will return null if requiredCalories is null
-                        user.setHeight(rs.getObject("height", Double.class)); // Will return null if height is null
-                        user.setActivityLevel(rs.getString("activityLevel")); // String can handle null naturally
-                        user.setGender(rs.getString("gender")); // String can handle null naturally
-                        user.setGoalType(rs.getString("goalType")); // String can handle null naturally
-                        user.setProfilePicture(rs.getString("profilePicture")); // String can handle null naturally
-                        user.setMemberType(rs.getString("memberType"));
-                        user.setStreak(rs.getObject("streak", Integer.class)); // Will return null if streak is null
-                        user.setLastLoggedDate(rs.getString("last_logged_date")); // Assuming lastLoginDate is stored as a String
-                        return user;
+                    if (Passwords.check(password, hashedPassword)) { // Verify password
+                        return mapUser(rs);
                     }
                 }
             }
         }
         return null;
     }
+
+    // Profile by id, for callers already authenticated by token or session: no password check
+    public user findUserById(int userId) throws SQLException {
+        String query = "SELECT * FROM users WHERE userId = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, userId);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? mapUser(rs) : null;
+            }
+        }
+    }
+
+    // Full profile row; password is the stored hash
+    private static user mapUser(ResultSet rs) throws SQLException {
+        user user = new user();
+        user.setUser_id(rs.getInt("userId"));
+        user.setUsername(rs.getString("username"));
+        user.setPassword(rs.getString("password")); // The hashed password
+        user.setEmail(rs.getString("email"));
+
+        // Handle nullable fields using wrapper classes
+        user.setAge(rs.getObject("age", Integer.class)); // Will return null if age is null
+        user.setCurrentWeight(rs.getObject("currentWeight", Double.class)); // Will return null if currentWeight is null
+        user.setTargetWeight(rs.getObject("targetWeight", Double.class)); // Will return null if targetWeight is null
+        user.setRequiredCalories(rs.getObject("requiredCalories", Integer.class)); // Will return null if requiredCalories is null
+        user.setHeight(rs.getObject("height", Double.class)); // Will return null if height is null
+        user.setActivityLevel(rs.getString("activityLevel")); // String can handle null naturally
+        user.setGender(rs.getString("gender")); // String can handle null naturally
+        user.setGoalType(rs.getString("goalType")); // String can handle null naturally
+        user.setProfilePicture(rs.getString("profilePicture")); // String can handle null naturally
+        user.setMemberType(rs.getString("memberType"));
+        user.setStreak(rs.getObject("streak", Integer.class)); // Will return null if streak is null
+        user.setLastLoggedDate(rs.getString("last_logged_date")); // Assuming lastLoginDate is stored as a String
+        return user;
+    }
+
     // Check if email is already registered
     public boolean isEmailRegistered(String email) throws SQLException {
         String query = "SELECT * FROM users WHERE email = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, email);
             try (ResultSet rs = statement.executeQuery()) {
                 return rs.next(); // If a row exists, email is registered
@@ -66,8 +101,9 @@ public class userdao {
     // Create a new user with hashed password
     public boolean createUser(user newUser) throws SQLException {
         String query = "INSERT INTO users (username, email, password) VALUES (?, ?, ?)";
-        String hashedPassword = BCrypt.hashpw(newUser.getPassword(), BCrypt.gensalt()); // Hash the password
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
+        String hashedPassword = Passwords.hash(newUser.getPassword()); // Hash the password
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, newUser.getUsername());
             statement.setString(2, newUser.getEmail());
             statement.setString(3, hashedPassword); // Store the hashed password
@@ -76,100 +112,284 @@ public class userdao {
         }
     }
 
-    // Log macro entries
+    // Log a macro entry. The user's streak, the entry and the daily_totals rollup are written in one
+    // transaction. The streak is worked out by the UPDATE itself: unchanged for a second log on the
+    // last logged day, +1 for the day after it, otherwise back to 1. Entries older than the last
+    // logged day leave it alone, as in logMacros. Updating the users row first takes its lock
+    // before anything else, in the same order as logMacros, so concurrent logs queue up instead of
+    // losing an increment.
     public boolean logMacro(int userId, String entryDate, String mealType, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) throws SQLException {
+        String streakUpdate = "UPDATE users SET "
+                + "streak = CASE WHEN last_logged_date = ? THEN COALESCE(streak, 0) "
+                + "WHEN last_logged_date = ? THEN COALESCE(streak, 0) + 1 ELSE 1 END, "
+                + "last_logged_date = ? "
+                + "WHERE userId = ? AND (last_logged_date IS NULL OR last_logged_date <= ?)";
         String query = "INSERT INTO macro_entries (userId, entryDate, mealType, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String dayBefore = LocalDate.parse(entryDate).minusDays(1).toString();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement streakStmt = connection.prepareStatement(streakUpdate);
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                streakStmt.setString(1, entryDate);
+                streakStmt.setString(2, dayBefore);
+                streakStmt.setString(3, entryDate);
+                streakStmt.setInt(4, userId);
+                streakStmt.setString(5, entryDate);
+                streakStmt.executeUpdate();
 
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            // Set the parameters for the prepared statement
-            statement.setInt(1, userId);      // userId
-            statement.setString(2, entryDate); // entryDate
-            statement.setString(3, mealType);  // mealType
-            statement.setInt(4, calories);     // calories
-            statement.setBigDecimal(5, carbs); // carbs (BigDecimal for DECIMAL fields)
-            statement.setBigDecimal(6, protein); // protein (BigDecimal for DECIMAL fields)
-            statement.setBigDecimal(7, fat);    // fat (BigDecimal for DECIMAL fields)
+                // Set the parameters for the prepared statement
+                statement.setInt(1, userId);      // userId
+                statement.setString(2, entryDate); // entryDate
+                statement.setString(3, mealType);  // mealType
+                statement.setInt(4, calories);     // calories
+                statement.setBigDecimal(5, carbs); // carbs (BigDecimal for DECIMAL fields)
+                statement.setBigDecimal(6, protein); // protein (BigDecimal for DECIMAL fields)
+                statement.setBigDecimal(7, fat);    // fat (BigDecimal for DECIMAL fields)
 
-            // Execute the update and check if any rows were affected
-            int rowsAffected = statement.executeUpdate();
-            return rowsAffected > 0;
+                // Execute the update and check if any rows were affected
+                int rowsAffected = statement.executeUpdate();
+                if (rowsAffected > 0) {
+                    DailyTotalsDao.addEntry(connection, userId, entryDate, calories, carbs, protein, fat);
+                }
+                connection.commit();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
     }
 
 
-    public boolean editMacro(int userId, String entryDate, String mealType, int calories, int carbs, int protein, int fat) throws SQLException {
-        String query = "UPDATE macro_entries SET calories = ?, carbs = ?, protein = ?, fat = ? WHERE userId = ? AND entryDate = ? AND mealType = ?";
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            statement.setInt(1, calories); // calories
-            statement.setInt(2, carbs); // carbs
-            statement.setInt(3, protein); // protein
-            statement.setInt(4, fat); // fat
-            statement.setInt(5, userId); // userId
-            statement.setString(6, entryDate); // entryDate
-            statement.setString(7, mealType); // mealType
+    // Logs a batch of entries for one user in a single transaction: one JDBC batch for the entries,
+    // one for the daily_totals rows and a single streak update based on the latest entryDate.
+    // Returns the user's streak afterwards, or -1 (nothing written) if the user does not exist.
+    public int logMacros(int userId, List<MacroEntry> entries) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int streak = logMacros(connection, userId, entries);
+                if (streak < 0) {
+                    connection.rollback();
+                } else {
+                    connection.commit();
+                }
+                return streak;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
 
-            int rowsAffected = statement.executeUpdate();
+    // logMacros on the caller's transaction, which it neither commits nor rolls back
+    static int logMacros(Connection connection, int userId, List<MacroEntry> entries) throws SQLException {
+        String lock = "SELECT streak, last_logged_date FROM users WHERE userId = ? FOR UPDATE";
+        String insert = "INSERT INTO macro_entries (userId, entryDate, mealType, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String streakUpdate = "UPDATE users SET streak = ?, last_logged_date = ? WHERE userId = ?";
 
-            return rowsAffected > 0;
+        try (PreparedStatement lockStmt = connection.prepareStatement(lock);
+             PreparedStatement insertStmt = connection.prepareStatement(insert);
+             PreparedStatement streakStmt = connection.prepareStatement(streakUpdate)) {
+            // Lock the user row so concurrent logs can't interleave their streak updates
+            lockStmt.setInt(1, userId);
+            int streak;
+            LocalDate lastLogged;
+            try (ResultSet rs = lockStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                streak = rs.getInt("streak");
+                lastLogged = rs.getDate("last_logged_date") != null ? rs.getDate("last_logged_date").toLocalDate() : null;
+            }
+
+            LocalDate latest = null;
+            for (MacroEntry entry : entries) {
+                insertStmt.setInt(1, userId);
+                insertStmt.setString(2, entry.getEntryDate());
+                insertStmt.setString(3, entry.getMealType());
+                insertStmt.setInt(4, entry.getCalories());
+                insertStmt.setBigDecimal(5, entry.getCarbs());
+                insertStmt.setBigDecimal(6, entry.getProtein());
+                insertStmt.setBigDecimal(7, entry.getFat());
+                insertStmt.addBatch();
+                LocalDate date = LocalDate.parse(entry.getEntryDate());
+                if (latest == null || date.isAfter(latest)) {
+                    latest = date;
+                }
+            }
+            insertStmt.executeBatch();
+            DailyTotalsDao.addEntries(connection, userId, entries);
+
+            // Entries older than the last logged day (offline backlog) leave the streak alone
+            if (latest != null && (lastLogged == null || !latest.isBefore(lastLogged))) {
+                if (lastLogged != null && latest.minusDays(1).isEqual(lastLogged)) {
+                    streak = streak + 1;
+                } else if (lastLogged == null || !latest.isEqual(lastLogged)) {
+                    streak = 1;
+                }
+                streakStmt.setInt(1, streak);
+                streakStmt.setString(2, latest.toString());
+                streakStmt.setInt(3, userId);
+                streakStmt.executeUpdate();
+            }
+            return streak;
         }
     }
 
-    public ResultSet findMacro(int userId, String entryDate) throws SQLException {
-        String query = "SELECT * FROM macro_entries WHERE userId = ? AND entryDate = ?";
-        PreparedStatement statement = connection.prepareStatement(query);
-        statement.setInt(1, userId);
-        statement.setString(2, entryDate);
+    // Edits every entry for the meal and shifts daily_totals by the difference, in one transaction
+    public boolean editMacro(int userId, String entryDate, String mealType, int calories, int carbs, int protein, int fat) throws SQLException {
+        String current = "SELECT calories, carbs, protein, fat FROM macro_entries WHERE userId = ? AND entryDate = ? AND mealType = ? FOR UPDATE";
+        String query = "UPDATE macro_entries SET calories = ?, carbs = ?, protein = ?, fat = ? WHERE userId = ? AND entryDate = ? AND mealType = ?";
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement select = connection.prepareStatement(current);
+                 PreparedStatement statement = connection.prepareStatement(query)) {
+                // Lock the meal's rows and read what the rollup currently holds for them
+                select.setInt(1, userId);
+                select.setString(2, entryDate);
+                select.setString(3, mealType);
+                int oldCalories = 0;
+                BigDecimal oldCarbs = BigDecimal.ZERO;
+                BigDecimal oldProtein = BigDecimal.ZERO;
+                BigDecimal oldFat = BigDecimal.ZERO;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        oldCalories += rs.getInt("calories");
+                        oldCarbs = oldCarbs.add(rs.getBigDecimal("carbs"));
+                        oldProtein = oldProtein.add(rs.getBigDecimal("protein"));
+                        oldFat = oldFat.add(rs.getBigDecimal("fat"));
+                    }
+                }
 
-        return statement.executeQuery();
-    }
+                statement.setInt(1, calories); // calories
+                statement.setInt(2, carbs); // carbs
+                statement.setInt(3, protein); // protein
+                statement.setInt(4, fat); // fat
+                statement.setInt(5, userId); // userId
+                statement.setString(6, entryDate); // entryDate
+                statement.setString(7, mealType); // mealType
 
-    public boolean updateUserDetails(int userId, Integer age, Double currentWeight, Double targetWeight,
-                                            Integer requiredCalories, Double height, String activityLevel,
-                                            String gender, String goalType, String profilePicture) throws SQLException {
-        StringBuilder queryBuilder = new StringBuilder("UPDATE users SET ");
-        boolean firstField = true;
+                int rowsAffected = statement.executeUpdate();
 
-        // Append fields dynamically based on non-null parameters
-        if (age != null) {
-            queryBuilder.append("age = ?");
-            firstField = false;
-        }
-        if (currentWeight != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("currentWeight = ?");
-            firstField = false;
-        }
-        if (targetWeight != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("targetWeight = ?");
-            firstField = false;
-        }
-        if (requiredCalories != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("requiredCalories = ?");
-            firstField = false;
-        }
-        if (height != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("height = ?");
-            firstField = false;
+                if (rowsAffected > 0) {
+                    BigDecimal rows = BigDecimal.valueOf(rowsAffected);
+                    DailyTotalsDao.applyDelta(connection, userId, entryDate,
+                            calories * rowsAffected - oldCalories,
+                            BigDecimal.valueOf(carbs).multiply(rows).subtract(oldCarbs),
+                            BigDecimal.valueOf(protein).multiply(rows).subtract(oldProtein),
+                            BigDecimal.valueOf(fat).multiply(rows).subtract(oldFat));
+                }
+                connection.commit();
+                return rowsAffected > 0;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
-        if (activityLevel != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("activityLevel = ?");
-            firstField = false;
+    }
+
+    // Rows are read into memory so the pooled connection can go back before the response is written
+    public List<MacroEntry> findMacro(int userId, String entryDate) throws SQLException {
+        String query = "SELECT userId, entryDate, mealType, calories, carbs, protein, fat FROM macro_entries WHERE userId = ? AND entryDate = ?";
+        List<MacroEntry> entries = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, userId);
+            statement.setString(2, entryDate);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    MacroEntry entry = new MacroEntry();
+                    entry.setUserId(rs.getInt("userId"));
+                    entry.setEntryDate(rs.getString("entryDate"));
+                    entry.setMealType(rs.getString("mealType"));
+                    entry.setCalories(rs.getInt("calories"));
+                    entry.setCarbs(rs.getBigDecimal("carbs"));
+                    entry.setProtein(rs.getBigDecimal("protein"));
+                    entry.setFat(rs.getBigDecimal("fat"));
+                    entries.add(entry);
+                }
+            }
         }
-        if (gender != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("gender = ?");
-            firstField = false;
+        return entries;
+    }
+
+    // Per-day (or per-day-and-meal) totals for an inclusive date range. Per-day totals come straight
+    // from the daily_totals rollup; the meal split is summed from macro_entries in one indexed query.
+    public List<MacroTotals> findMacroTotals(int userId, String fromDate, String toDate, boolean byMealType) throws SQLException {
+        if (!byMealType) {
+            return new DailyTotalsDao(dataSource).findRange(userId, fromDate, toDate);
         }
-        if (goalType != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("goalType = ?");
-            firstField = false;
+        String query = "SELECT entryDate, mealType, SUM(calories) AS calories, SUM(carbs) AS carbs, SUM(protein) AS protein, SUM(fat) AS fat, COUNT(*) AS entryCount "
+                + "FROM macro_entries WHERE userId = ? AND entryDate BETWEEN ? AND ? GROUP BY entryDate, mealType ORDER BY entryDate, mealType";
+        List<MacroTotals> totals = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setInt(1, userId);
+            statement.setString(2, fromDate);
+            statement.setString(3, toDate);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    MacroTotals day = new MacroTotals();
+                    day.setEntryDate(rs.getString("entryDate"));
+                    day.setMealType(rs.getString("mealType"));
+                    day.setCalories(rs.getInt("calories"));
+                    day.setCarbs(rs.getBigDecimal("carbs"));
+                    day.setProtein(rs.getBigDecimal("protein"));
+                    day.setFat(rs.getBigDecimal("fat"));
+                    day.setEntryCount(rs.getInt("entryCount"));
+                    totals.add(day);
+                }
+            }
         }
-        if (profilePicture != null) {
-            queryBuilder.append(firstField ? "" : ", ").append("profilePicture = ?");
+        return totals;
+    }
+
+    // Streams every macro entry for the user, oldest first, through a forward-only server-side cursor
+    public int streamMacroHistory(int userId, RowConsumer<MacroEntry> consumer) throws SQLException, IOException {
+        String query = "SELECT userId, entryDate, mealType, calories, carbs, protein, fat FROM macro_entries WHERE userId = ? ORDER BY entryDate";
+        int rows = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            statement.setInt(1, userId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    MacroEntry entry = new MacroEntry();
+                    entry.setUserId(rs.getInt("userId"));
+                    entry.setEntryDate(rs.getString("entryDate"));
+                    entry.setMealType(rs.getString("mealType"));
+                    entry.setCalories(rs.getInt("calories"));
+                    entry.setCarbs(rs.getBigDecimal("carbs"));
+                    entry.setProtein(rs.getBigDecimal("protein"));
+                    entry.setFat(rs.getBigDecimal("fat"));
+                    consumer.accept(entry);
+                    rows++;
+                }
+            }
         }
+        return rows;
+    }
 
-        // Add the WHERE clause
-        queryBuilder.append(" WHERE userId = ?");
+    public boolean updateUserDetails(int userId, Integer age, Double currentWeight, Double targetWeight,
+                                            Integer requiredCalories, Double height, String activityLevel,
+                                            String gender, String goalType, String profilePicture) throws SQLException {
+        int mask = (age != null ? 1 : 0)
+                | (currentWeight != null ? 1 << 1 : 0)
+                | (targetWeight != null ? 1 << 2 : 0)
+                | (requiredCalories != null ? 1 << 3 : 0)
+                | (height != null ? 1 << 4 : 0)
+                | (activityLevel != null ? 1 << 5 : 0)
+                | (gender != null ? 1 << 6 : 0)
+                | (goalType != null ? 1 << 7 : 0)
+                | (profilePicture != null ? 1 << 8 : 0);
+        if (mask == 0) {
+            return false; // nothing to set
+        }
 
-        try (PreparedStatement statement = connection.prepareStatement(queryBuilder.toString())) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(PROFILE_UPDATE_SQL[mask])) {
             int parameterIndex = 1;
 
             // Set parameters dynamically
@@ -190,9 +410,26 @@ public class userdao {
         }
     }
 
+    private static String[] profileUpdateSql() {
+        String[] sql = new String[1 << PROFILE_COLUMNS.length];
+        for (int mask = 1; mask < sql.length; mask++) {
+            StringBuilder query = new StringBuilder("UPDATE users SET ");
+            boolean firstField = true;
+            for (int i = 0; i < PROFILE_COLUMNS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    query.append(firstField ? "" : ", ").append(PROFILE_COLUMNS[i]).append(" = ?");
+                    firstField = false;
+                }
+            }
+            sql[mask] = query.append(" WHERE userId = ?").toString();
+        }
+        return sql;
+    }
+
     public user getUserById(int userId) throws SQLException {
         String query = "SELECT streak, last_logged_date FROM users WHERE userId = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setInt(1, userId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -208,9 +445,22 @@ public class userdao {
         return null;
     }
 
+    // memberType only, e.g. for the upload quota; null for an unknown user
+    public String getMemberType(int userId) throws SQLException {
+        String query = "SELECT memberType FROM users WHERE userId = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setInt(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("memberType") : null;
+            }
+        }
+    }
+
     public void updateUserStreak(int userId, int newStreak, String lastLoggedDate) throws SQLException {
         String query = "UPDATE users SET streak = ?, last_logged_date = ? WHERE userId = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setInt(1, newStreak);
             stmt.setString(2, lastLoggedDate);
             stmt.setInt(3, userId);
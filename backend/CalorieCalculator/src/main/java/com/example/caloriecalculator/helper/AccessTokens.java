@@ -0,0 +1,90 @@
+package com.example.caloriecalculator.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.logging.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless access tokens of the form "&lt;userId&gt;.&lt;expiresAt&gt;.&lt;signature&gt;". The signature is
+ * an HMAC-SHA256 of the first two fields under a server secret. Checking a token takes
+ * microseconds and needs no session, database or BCrypt, so any node with the same secret accepts it.
+ *
+ * The secret is macrotracker.token.secret or the MACROTRACKER_TOKEN_SECRET environment variable,
+ * at least 32 characters. Without one, a random secret is generated at startup. That logs everyone
+ * out on restart and won't work across nodes. Tokens last macrotracker.token.ttlSeconds (30 days by
+ * default); /validateToken hands out a fresh one.
+ */
+public final class AccessTokens {
+    private static final Logger LOGGER = Logger.getLogger(AccessTokens.class.getName());
+
+    private static final long TTL_SECONDS = Long.getLong("macrotracker.token.ttlSeconds", 30L * 24 * 3600);
+    private static final SecretKeySpec KEY = new SecretKeySpec(secret(), "HmacSHA256");
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    });
+
+    private AccessTokens() {
+    }
+
+    public static String issue(int userId) {
+        String payload = userId + "." + (System.currentTimeMillis() / 1000 + TTL_SECONDS);
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    // The token's userId, or null if it is malformed, forged or expired
+    public static Integer verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last <= first) {
+            return null;
+        }
+        try {
+            int userId = Integer.parseInt(token.substring(0, first));
+            long expiresAt = Long.parseLong(token.substring(first + 1, last));
+            byte[] signature = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(token.substring(0, last)))) {
+                return null;
+            }
+            return expiresAt > System.currentTimeMillis() / 1000 ? userId : null;
+        } catch (IllegalArgumentException e) {
+            return null; // bad number or base64
+        }
+    }
+
+    public static long getTtlSeconds() {
+        return TTL_SECONDS;
+    }
+
+    private static byte[] sign(String payload) {
+        return MAC.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] secret() {
+        String configured = System.getProperty("macrotracker.token.secret", System.getenv("MACROTRACKER_TOKEN_SECRET"));
+        if (configured != null && configured.length() >= 32) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        LOGGER.warning("macrotracker.token.secret is not set (or shorter than 32 characters); using a random secret, "
+                + "so tokens will not survive a restart or work across nodes");
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+}
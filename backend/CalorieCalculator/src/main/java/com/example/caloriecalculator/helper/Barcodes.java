@@ -0,0 +1,47 @@
+package com.example.caloriecalculator.helper;
+
+public class Barcodes {
+    public static final long INVALID = -1L;
+
+    private Barcodes() {
+    }
+
+    // Parses an EAN-8, UPC-A or EAN-13 code into its numeric GTIN after checking the check digit.
+    // Returns INVALID for anything else (wrong length, non-digits, bad checksum).
+    public static long toGtin(String code) {
+        if (code == null) {
+            return INVALID;
+        }
+        int length = code.length();
+        if (length != 8 && length != 12 && length != 13) {
+            return INVALID;
+        }
+        long value = 0;
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            int digit = c - '0';
+            value = value * 10 + digit;
+            if (i < length - 1) {
+                // Weights alternate 3,1,3,... starting from the digit next to the check digit
+                sum += ((length - 1 - i) % 2 == 1) ? digit * 3 : digit;
+            }
+        }
+        int check = (10 - (sum % 10)) % 10;
+        return check == code.charAt(length - 1) - '0' ? value : INVALID;
+    }
+
+    // Packs the GTIN and the digit count into one long, so a UPC-A code and its zero-prefixed
+    // EAN-13 form (stored as different strings) stay distinct. Returns INVALID like toGtin.
+    public static long toKey(String code) {
+        long gtin = toGtin(code);
+        return gtin == INVALID ? INVALID : (gtin << 4) | code.length();
+    }
+
+    public static boolean isValid(String barcode) {
+        return toGtin(barcode) != INVALID;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded in-process cache with per-entry TTL and LRU eviction.
+ *
+ * The key space is split into lock-striped segments, each an access-ordered LinkedHashMap,
+ * so concurrent requests rarely contend. Named caches register themselves so their
+ * hit/miss/eviction counters can be reported from one place.
+ */
+public class BoundedCache<K, V> {
+    private static final Map<String, BoundedCache<?, ?>> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Segment<K, V>[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedCache(String name, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.name = name;
+        int segmentCount = Math.min(16, Integer.highestOneBit(Math.max(1, maxSize / 64)));
+        int perSegment = Math.max(1, maxSize / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+        REGISTRY.put(name, this);
+    }
+
+    // Returns the cached value, or null when absent or expired
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                segment.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    // Like get, but leaves the hit/miss counters alone; for writers updating an entry in place
+    public V peek(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            return entry != null && entry.expiresAt > System.currentTimeMillis() ? entry.value : null;
+        }
+    }
+
+    public void put(K key, V value, long ttlMillis) {
+        Segment<K, V> segment = segmentFor(key);
+        Entry<V> entry = new Entry<>(value, System.currentTimeMillis() + ttlMillis);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public static Map<String, BoundedCache<?, ?>> registered() {
+        return Collections.unmodifiableMap(REGISTRY);
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
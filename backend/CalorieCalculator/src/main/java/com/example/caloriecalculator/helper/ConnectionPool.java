@@ -0,0 +1,601 @@
+package com.example.caloriecalculator.helper;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Small thread-safe JDBC connection pool.
+ *
+ * Connections are borrowed per DAO operation and handed back when the caller closes them.
+ * Idle connections are validated on borrow, evicted after the idle timeout (down to minSize)
+ * and the pool is topped back up to minSize in the background, so a dropped MySQL connection
+ * is replaced on the next borrow instead of taking the endpoint down.
+ *
+ * Each physical connection also keeps up to statementCacheSize prepared statements open, least
+ * recently used evicted first. prepareStatement(sql) hands back the one already prepared for that
+ * SQL when there is one, so with server-side prepared statements MySQL parses and plans each
+ * statement once per connection rather than once per request. Closing the borrowed statement
+ * clears its parameters and keeps it open. A statement whose fetch size, timeout or similar
+ * settings were changed is closed instead of kept. Other prepareStatement overloads are not cached.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // Idle connections, most recently returned first so the tail ages out
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    // One permit per physical connection that may exist outside the idle deque
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService housekeeper;
+
+    // Metrics
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, int validationTimeoutSeconds) {
+        this(url, user, password, minSize, maxSize, idleTimeoutMillis, borrowTimeoutMillis, validationTimeoutSeconds, 64);
+    }
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMillis / 2, 30_000L));
+        // First run fills the pool to minSize without blocking startup if MySQL is not up yet
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.increment();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis
+                        + "ms waiting for a database connection (active=" + getActiveCount() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    break;
+                }
+                validationFailures.increment();
+                destroy(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            recordBorrow(System.nanoTime() - start);
+            return new Lease(pooled).proxy();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        try {
+            return !pooled.physical.isClosed() && pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.increment();
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    // Called by the proxy when the borrower closes its connection
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed.get() || pooled.broken || pooled.physical.isClosed()) {
+                destroy(pooled);
+                return;
+            }
+            returnStatements(pooled);
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsedMillis = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Hands back the cached statement for sql, preparing and caching it on a miss
+    private PreparedStatement prepareCached(PooledConnection pooled, Connection owner, String sql) throws SQLException {
+        CachedStatement cached = pooled.statements.get(sql);
+        if (cached != null && cached.checkout != null) {
+            // The borrower still has this SQL open; give it a separate, uncached statement
+            statementMisses.increment();
+            return pooled.physical.prepareStatement(sql);
+        }
+        if (cached != null) {
+            statementHits.increment();
+        } else {
+            statementMisses.increment();
+            cached = new CachedStatement(sql, pooled.physical.prepareStatement(sql));
+            pooled.statements.put(sql, cached);
+            trimStatements(pooled);
+        }
+        cached.checkout = new StatementLease(pooled, cached, owner);
+        return cached.checkout.proxy();
+    }
+
+    private void trimStatements(PooledConnection pooled) {
+        Iterator<CachedStatement> it = pooled.statements.values().iterator();
+        while (pooled.statements.size() > statementCacheSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            statementEvictions.increment();
+            if (eldest.checkout == null) {
+                closeQuietly(eldest.physical);
+            } else {
+                eldest.evicted = true; // closed when the borrower is done with it
+            }
+        }
+    }
+
+    // Puts a borrowed statement back, or closes it if it can't be reused as it is
+    private void returnStatement(PooledConnection pooled, CachedStatement cached) {
+        cached.checkout = null;
+        if (!cached.evicted && !cached.dirty && !pooled.broken) {
+            try {
+                cached.physical.clearParameters();
+                cached.physical.clearBatch();
+                return;
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Dropping cached statement", e);
+            }
+        }
+        pooled.statements.remove(cached.sql, cached);
+        closeQuietly(cached.physical);
+    }
+
+    // Statements the borrower left open go back in the cache along with the connection
+    private void returnStatements(PooledConnection pooled) {
+        for (CachedStatement cached : pooled.statements.values().toArray(new CachedStatement[0])) {
+            if (cached.checkout != null) {
+                returnStatement(pooled, cached);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing cached statement", e);
+        }
+    }
+
+    // SQLState class 08 is a connection exception; don't hand this connection out again
+    private static void markIfBroken(PooledConnection pooled, Throwable cause) {
+        if (cause instanceof SQLException sqlException) {
+            String state = sqlException.getSQLState();
+            if (state != null && state.startsWith("08")) {
+                pooled.broken = true;
+            }
+        }
+    }
+
+    private void recordBorrow(long waitNanos) {
+        borrowCount.increment();
+        borrowWaitNanos.add(waitNanos);
+        maxBorrowWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // Evicts connections idle past the timeout and tops the pool back up to minSize
+    private void housekeep() {
+        try {
+            long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && totalConnections.get() > minSize) {
+                PooledConnection pooled = it.next();
+                if (pooled.lastUsedMillis < cutoff && idle.remove(pooled)) {
+                    evictedCount.increment();
+                    destroy(pooled);
+                }
+            }
+
+            while (!closed.get() && totalConnections.get() < minSize && permits.tryAcquire()) {
+                try {
+                    idle.offerLast(create());
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to refill connection pool: " + e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        LOGGER.info("Connection pool closed: " + this);
+    }
+
+    // Metrics
+
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public double getAverageBorrowWaitMillis() {
+        long count = borrowCount.sum();
+        return count == 0 ? 0.0 : borrowWaitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getBorrowTimeoutCount() {
+        return borrowTimeouts.sum();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailures.sum();
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public long getStatementHitCount() {
+        return statementHits.sum();
+    }
+
+    public long getStatementMissCount() {
+        return statementMisses.sum();
+    }
+
+    public long getStatementEvictionCount() {
+        return statementEvictions.sum();
+    }
+
+    public double getStatementHitRate() {
+        long hits = statementHits.sum();
+        long total = hits + statementMisses.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActiveCount() +
+                ", idle=" + getIdleCount() +
+                ", total=" + getTotalCount() +
+                ", max=" + maxSize +
+                ", borrows=" + getBorrowCount() +
+                ", avgWaitMs=" + String.format("%.3f", getAverageBorrowWaitMillis()) +
+                ", maxWaitMs=" + String.format("%.3f", getMaxBorrowWaitMillis()) +
+                ", timeouts=" + getBorrowTimeoutCount() +
+                ", created=" + getCreatedCount() +
+                ", evicted=" + getEvictedCount() +
+                ", validationFailures=" + getValidationFailureCount() +
+                ", statementHitRate=" + String.format("%.3f", getStatementHitRate()) +
+                '}';
+    }
+
+    // DataSource boilerplate
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOGGER;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /** A physical connection sitting in, or checked out of, the pool. */
+    private static final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        private volatile boolean broken;
+        // Prepared statements kept open on this connection, least recently used first. Only the
+        // current borrower touches it; the deque hand-off orders one borrower after the next.
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    /** A prepared statement cached on its connection, and who has it checked out. */
+    private static final class CachedStatement {
+        private final String sql;
+        private final PreparedStatement physical;
+        private StatementLease checkout;
+        private boolean evicted;
+        private boolean dirty;
+
+        CachedStatement(String sql, PreparedStatement physical) {
+            this.sql = sql;
+            this.physical = physical;
+        }
+    }
+
+    /**
+     * One checkout of a cached statement. Closing the proxy puts the statement back in the cache;
+     * like a Lease, a reference kept after close() cannot reach the next borrower's statement.
+     */
+    private final class StatementLease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final CachedStatement cached;
+        private final Connection owner;
+
+        StatementLease(PooledConnection pooled, CachedStatement cached, Connection owner) {
+            this.pooled = pooled;
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean current = cached.checkout == this;
+            switch (method.getName()) {
+                case "close":
+                    if (current) {
+                        returnStatement(pooled, cached);
+                    }
+                    return null;
+                case "isClosed":
+                    return !current || cached.physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.physical;
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setMaxFieldSize":
+                case "setQueryTimeout":
+                case "setEscapeProcessing":
+                case "setPoolable":
+                case "setCursorName":
+                case "closeOnCompletion":
+                    cached.dirty = true; // settings that would outlive this borrower
+                    break;
+                default:
+                    break;
+            }
+            if (!current) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                markIfBroken(pooled, e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. Closing the proxy returns the physical connection
+     * to the pool instead of closing the socket; a stale reference kept after close() cannot
+     * reach the connection the next borrower was given.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (returned.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+            if (returned.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (statementCacheSize > 0 && method.getName().equals("prepareStatement") && args.length == 1) {
+                try {
+                    return prepareCached(pooled, (Connection) proxy, (String) args[0]);
+                } catch (SQLException e) {
+                    markIfBroken(pooled, e);
+                    throw e;
+                }
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                markIfBroken(pooled, e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+}
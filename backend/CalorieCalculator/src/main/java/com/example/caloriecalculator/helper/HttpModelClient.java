@@ -0,0 +1,95 @@
+package com.example.caloriecalculator.helper;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Model calls to a plain HTTP endpoint, used instead of OpenAIHelper when macrotracker.model.url
+ * is set. The request is a JSON POST of {"prompt", "image"} with the image base64-encoded, as
+ * large as what goes upstream; the response body is the model's answer, returned as is. Calls
+ * time out after macrotracker.model.timeoutMillis.
+ *
+ * The body is encoded from a read-only mapping of the stored file ({@link ImageStore#map}) one
+ * chunk at a time as it is sent, so neither the photo nor its base64 text is ever held whole.
+ */
+public final class HttpModelClient {
+    private static final String URL = System.getProperty("macrotracker.model.url");
+    private static final int CHUNK_BYTES = 3 * 16 * 1024;
+    private static final Duration TIMEOUT = Duration.ofMillis(Long.getLong("macrotracker.model.timeoutMillis", 120_000L));
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private HttpModelClient() {
+    }
+
+    public static boolean isConfigured() {
+        return URL != null && !URL.isEmpty();
+    }
+
+    public static String callModelWithImage(String imagePath, String prompt) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(URL))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(body(prompt, ImageStore.map(Paths.get(imagePath))))
+                .build();
+        HttpResponse<String> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (response.statusCode() != 200) {
+            throw new IOException("Model endpoint returned HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    // {"prompt":...,"image":"<base64>"}, with the image encoded a chunk at a time; re-iterable for retries
+    private static HttpRequest.BodyPublisher body(String prompt, ByteBuffer image) {
+        byte[] head = ("{\"prompt\":" + JSONObject.quote(prompt) + ",\"image\":\"").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = "\"}".getBytes(StandardCharsets.UTF_8);
+        long length = head.length + 4L * ((image.remaining() + 2) / 3) + tail.length;
+        Iterable<byte[]> parts = () -> new Iterator<>() {
+            private final ByteBuffer data = image.duplicate();
+            private int part; // 0 head, 1 image chunks, 2 tail, 3 done
+
+            @Override
+            public boolean hasNext() {
+                return part < 3;
+            }
+
+            @Override
+            public byte[] next() {
+                switch (part) {
+                    case 0:
+                        part = data.hasRemaining() ? 1 : 2;
+                        return head;
+                    case 1:
+                        // Whole groups of three bytes, so only the last chunk can carry padding
+                        byte[] chunk = new byte[Math.min(CHUNK_BYTES, data.remaining())];
+                        data.get(chunk);
+                        if (!data.hasRemaining()) {
+                            part = 2;
+                        }
+                        return Base64.getEncoder().encode(chunk);
+                    case 2:
+                        part = 3;
+                        return tail;
+                    default:
+                        throw new NoSuchElementException();
+                }
+            }
+        };
+        return HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofByteArrays(parts), length);
+    }
+}
@@ -0,0 +1,469 @@
+package com.example.caloriecalculator.helper;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Shrinks uploaded photos before they are stored or sent to the model, so neither depends on the
+ * client having scaled them (only the current iOS app does).
+ *
+ * JPEG, PNG and GIF uploads are decoded, scaled so the long edge is at most
+ * macrotracker.imageResize.maxEdge pixels with the EXIF orientation applied, and re-encoded as
+ * JPEG at macrotracker.imageResize.quality (percent) with no metadata. A JPEG that is already
+ * small enough and upright is not re-encoded; its EXIF, XMP, comment and other APPn segments are
+ * dropped instead. WebP and HEIC have no JDK decoder and pass through unchanged, as does anything
+ * that fails to decode.
+ *
+ * The work runs on a fixed pool of macrotracker.imageResize.threads threads (the CPU count by
+ * default) with a bounded queue, so decoding can't take over the machine; when the queue is full
+ * the upload is refused with 503.
+ */
+public final class ImageResizer {
+    private static final Logger LOGGER = Logger.getLogger(ImageResizer.class.getName());
+
+    public static final int MAX_EDGE = Integer.getInteger("macrotracker.imageResize.maxEdge", 1024);
+    private static final float QUALITY = Integer.getInteger("macrotracker.imageResize.quality", 80) / 100f;
+    private static final long MAX_PIXELS = Long.getLong("macrotracker.imageResize.maxPixels", 50_000_000L);
+    private static final int THREADS = Integer.getInteger("macrotracker.imageResize.threads", Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_SIZE = Integer.getInteger("macrotracker.imageResize.queueSize", 2 * THREADS);
+    private static final Set<String> DECODABLE = Set.of("image/jpeg", "image/png", "image/gif");
+
+    private static final AtomicLong resized = new AtomicLong();
+    private static final AtomicLong stripped = new AtomicLong();
+    private static final AtomicLong passedThrough = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+    private static final AtomicLong bytesIn = new AtomicLong();
+    private static final AtomicLong bytesOut = new AtomicLong();
+    private static final AtomicLong decodeNanos = new AtomicLong();
+    private static final AtomicLong scaleNanos = new AtomicLong();
+    private static final AtomicLong encodeNanos = new AtomicLong();
+    private static final AtomicLong queueNanos = new AtomicLong();
+    private static final AtomicLong maxNanos = new AtomicLong();
+
+    private static volatile ThreadPoolExecutor pool;
+
+    private ImageResizer() {
+    }
+
+    // Shrinks the upload in place (same pooled buffer; its hash and MIME type change). Blocks until done.
+    public static void process(ImageUpload image) throws IOException {
+        long submitted = System.nanoTime();
+        Future<?> future;
+        try {
+            future = pool().submit(() -> {
+                queueNanos.addAndGet(System.nanoTime() - submitted);
+                shrink(image);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ImageUpload.Rejected(503, "Too many images being processed.");
+        }
+
+        // The task writes into the upload's buffer, so wait it out even if interrupted; the caller
+        // releases that buffer as soon as this returns
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Image resize failed", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long elapsed = System.nanoTime() - submitted;
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private static void shrink(ImageUpload image) throws IOException {
+        String mimeType = image.getMimeType();
+        if (!DECODABLE.contains(mimeType)) {
+            passedThrough.incrementAndGet();
+            return;
+        }
+        int sizeIn = image.size();
+        long start = System.nanoTime();
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new BufferInputStream(image.data()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                passedThrough.incrementAndGet();
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    throw new ImageUpload.Rejected(413, "Image dimensions are too large.");
+                }
+                boolean jpeg = "image/jpeg".equals(mimeType);
+                int orientation = jpeg ? exifOrientation(image.data()) : 1;
+                int longEdge = Math.max(width, height);
+
+                if (jpeg && longEdge <= MAX_EDGE && orientation == 1) {
+                    Output out = stripMetadata(image.data());
+                    image.replace(out.buffer(), out.size(), "image/jpeg");
+                    stripped.incrementAndGet();
+                    bytesIn.addAndGet(sizeIn);
+                    bytesOut.addAndGet(out.size());
+                    return;
+                }
+
+                // Whole-pixel subsampling while decoding keeps the long edge >= MAX_EDGE but avoids
+                // holding a full-resolution bitmap; the final step is a small bilinear scale
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsample = Math.max(1, longEdge / MAX_EDGE);
+                param.setSourceSubsampling(subsample, subsample, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                long decodedAt = System.nanoTime();
+
+                BufferedImage scaled = scale(decoded, orientation);
+                long scaledAt = System.nanoTime();
+
+                Output out = encode(scaled);
+                long encodedAt = System.nanoTime();
+
+                image.replace(out.buffer(), out.size(), "image/jpeg");
+                resized.incrementAndGet();
+                bytesIn.addAndGet(sizeIn);
+                bytesOut.addAndGet(out.size());
+                decodeNanos.addAndGet(decodedAt - start);
+                scaleNanos.addAndGet(scaledAt - decodedAt);
+                encodeNanos.addAndGet(encodedAt - scaledAt);
+            } finally {
+                reader.dispose();
+            }
+        } catch (ImageUpload.Rejected e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            // CMYK JPEGs, truncated files and the like; the model may still cope with the original
+            failed.incrementAndGet();
+            LOGGER.log(Level.FINE, "Could not resize " + mimeType + " upload; keeping it as sent", e);
+        }
+    }
+
+    // Scales to fit MAX_EDGE and turns the image upright; transparent pixels become white
+    private static BufferedImage scale(BufferedImage source, int orientation) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double factor = Math.min(1.0, (double) MAX_EDGE / Math.max(width, height));
+        int scaledWidth = Math.max(1, (int) Math.round(width * factor));
+        int scaledHeight = Math.max(1, (int) Math.round(height * factor));
+        boolean transposed = orientation >= 5 && orientation <= 8;
+        int targetWidth = transposed ? scaledHeight : scaledWidth;
+        int targetHeight = transposed ? scaledWidth : scaledHeight;
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetWidth, targetHeight);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            AffineTransform transform = orientationTransform(orientation, targetWidth, targetHeight);
+            transform.scale((double) scaledWidth / width, (double) scaledHeight / height);
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // Maps the stored pixel layout onto an upright image of the given size (EXIF orientations 1-8)
+    private static AffineTransform orientationTransform(int orientation, int width, int height) {
+        switch (orientation) {
+            case 2: return new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3: return new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4: return new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5: return new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6: return new AffineTransform(0, 1, -1, 0, width, 0);
+            case 7: return new AffineTransform(0, -1, -1, 0, width, height);
+            case 8: return new AffineTransform(0, -1, 1, 0, 0, height);
+            default: return new AffineTransform();
+        }
+    }
+
+    private static Output encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Output bytes = new Output(64 * 1024);
+        try (ImageOutputStream out = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(QUALITY);
+            // No metadata passed in, so only a bare JFIF header is written
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes;
+    }
+
+    // Copies a JPEG without its APP1-APP13 and APP15 (EXIF, GPS, XMP, ICC, thumbnails) and COM segments.
+    // APP0 (JFIF) and APP14 (Adobe colour transform) are kept since decoders rely on them.
+    static Output stripMetadata(ByteBuffer data) throws IOException {
+        int limit = data.limit();
+        Output out = new Output(limit);
+        out.write(0xFF);
+        out.write(0xD8);
+        int pos = 2;
+        while (pos + 4 <= limit) {
+            if ((data.get(pos) & 0xFF) != 0xFF) {
+                throw new IOException("Malformed JPEG marker at " + pos);
+            }
+            int marker = data.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == 0xDA) {
+                // Start of scan: the rest is entropy-coded image data
+                out.write(data, pos, limit - pos);
+                return out;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                out.write(data, pos, 2);
+                pos += 2;
+                continue;
+            }
+            int end = pos + 2 + (((data.get(pos + 2) & 0xFF) << 8) | (data.get(pos + 3) & 0xFF));
+            if (end > limit) {
+                throw new IOException("Truncated JPEG segment at " + pos);
+            }
+            boolean metadata = (marker >= 0xE1 && marker <= 0xED) || marker == 0xEF || marker == 0xFE;
+            if (!metadata) {
+                out.write(data, pos, end - pos);
+            }
+            pos = end;
+        }
+        throw new IOException("JPEG has no image data");
+    }
+
+    // EXIF orientation tag (1-8) from a JPEG's APP1 segment; 1 if absent or unreadable
+    static int exifOrientation(ByteBuffer data) {
+        try {
+            int limit = data.limit();
+            int pos = 2;
+            while (pos + 4 <= limit && (data.get(pos) & 0xFF) == 0xFF) {
+                int marker = data.get(pos + 1) & 0xFF;
+                if (marker == 0xDA) {
+                    break;
+                }
+                int end = pos + 2 + (((data.get(pos + 2) & 0xFF) << 8) | (data.get(pos + 3) & 0xFF));
+                if (marker == 0xE1 && data.get(pos + 4) == 'E' && data.get(pos + 5) == 'x' && data.get(pos + 6) == 'i'
+                        && data.get(pos + 7) == 'f' && data.get(pos + 8) == 0 && data.get(pos + 9) == 0) {
+                    int tiff = pos + 10;
+                    ByteBuffer exif = data.duplicate()
+                            .order(data.get(tiff) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                    int ifd = tiff + exif.getInt(tiff + 4);
+                    int entries = exif.getShort(ifd) & 0xFFFF;
+                    for (int i = 0; i < entries; i++) {
+                        int entry = ifd + 2 + 12 * i;
+                        if (entry + 12 > end) {
+                            break;
+                        }
+                        if ((exif.getShort(entry) & 0xFFFF) == 0x0112) {
+                            int orientation = exif.getShort(entry + 8) & 0xFFFF;
+                            return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                        }
+                    }
+                    return 1;
+                }
+                pos = end;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF
+        }
+        return 1;
+    }
+
+    private static ThreadPoolExecutor pool() {
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            synchronized (ImageResizer.class) {
+                current = pool;
+                if (current == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    ThreadFactory factory = r -> {
+                        Thread thread = new Thread(r, "image-resize-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+                    current = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(QUEUE_SIZE), factory);
+                    current.allowCoreThreadTimeOut(true);
+                    pool = current;
+                    LOGGER.info("Image resizing on " + THREADS + " threads, max edge " + MAX_EDGE + "px");
+                }
+            }
+        }
+        return current;
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+        }
+    }
+
+    public static long getResizedCount() {
+        return resized.get();
+    }
+
+    public static long getStrippedCount() {
+        return stripped.get();
+    }
+
+    public static long getPassedThroughCount() {
+        return passedThrough.get();
+    }
+
+    public static long getFailedCount() {
+        return failed.get();
+    }
+
+    public static long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public static long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public static long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public static double getAverageDecodeMillis() {
+        return averageMillis(decodeNanos.get(), resized.get());
+    }
+
+    public static double getAverageScaleMillis() {
+        return averageMillis(scaleNanos.get(), resized.get());
+    }
+
+    public static double getAverageEncodeMillis() {
+        return averageMillis(encodeNanos.get(), resized.get());
+    }
+
+    public static double getAverageQueueMillis() {
+        return averageMillis(queueNanos.get(), resized.get() + stripped.get() + passedThrough.get() + failed.get());
+    }
+
+    public static double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    public static int getQueueDepth() {
+        ThreadPoolExecutor current = pool;
+        return current != null ? current.getQueue().size() : 0;
+    }
+
+    private static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0.0 : nanos / 1_000_000.0 / count;
+    }
+
+    // ByteArrayOutputStream that hands out its array instead of copying it
+    static final class Output extends ByteArrayOutputStream {
+        Output(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        void write(ByteBuffer data, int offset, int length) {
+            ensureCapacity(count + length);
+            data.get(offset, buf, count, length);
+            count += length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, 2 * buf.length));
+            }
+        }
+    }
+
+    // Reads a ByteBuffer (the off-heap upload) as a stream for ImageIO
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer data;
+
+        BufferInputStream(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return data.hasRemaining() ? data.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, data.remaining());
+            data.get(b, off, n);
+            return n;
+        }
+    }
+}
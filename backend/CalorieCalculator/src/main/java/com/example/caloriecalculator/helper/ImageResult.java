@@ -0,0 +1,37 @@
+package com.example.caloriecalculator.helper;
+
+// Parsed nutrition estimate for one photo, as returned to the client
+public class ImageResult {
+    private String label;
+    private int calories;
+    private int protein;
+    private int carbs;
+    private int fat;
+
+    public ImageResult() {
+    }
+
+    public ImageResult(String label, int calories, int protein, int carbs, int fat) {
+        this.label = label;
+        this.calories = calories;
+        this.protein = protein;
+        this.carbs = carbs;
+        this.fat = fat;
+    }
+
+    // Getters and Setters
+    public String getLabel() { return label; }
+    public void setLabel(String label) { this.label = label; }
+
+    public int getCalories() { return calories; }
+    public void setCalories(int calories) { this.calories = calories; }
+
+    public int getProtein() { return protein; }
+    public void setProtein(int protein) { this.protein = protein; }
+
+    public int getCarbs() { return carbs; }
+    public void setCarbs(int carbs) { this.carbs = carbs; }
+
+    public int getFat() { return fat; }
+    public void setFat(int fat) { this.fat = fat; }
+}
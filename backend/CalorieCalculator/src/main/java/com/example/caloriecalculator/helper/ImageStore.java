@@ -0,0 +1,155 @@
+package com.example.caloriecalculator.helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed store for uploaded images on local disk, replacing the base64Input column.
+ *
+ * A file lives at root/ab/cd/&lt;sha256&gt;.&lt;ext&gt; (the first two bytes of the hash as directories,
+ * the extension from the sniffed MIME type) and is written once: a photo that is already stored is
+ * not written again. Writes go to a temp file in the same directory and are moved into place, so a
+ * reader never sees a partial image. Reads are memory-mapped ({@link #map}), which is how
+ * HttpModelClient encodes a stored photo for the model without reading it onto the heap.
+ *
+ * The root is macrotracker.imageStore.dir, by default ~/macrotracker-images.
+ */
+public final class ImageStore {
+    private static final Logger LOGGER = Logger.getLogger(ImageStore.class.getName());
+
+    private static volatile ImageStore defaultStore;
+
+    private final Path root;
+
+    public ImageStore(Path root) {
+        this.root = root;
+    }
+
+    public static ImageStore getDefault() {
+        ImageStore current = defaultStore;
+        if (current == null) {
+            synchronized (ImageStore.class) {
+                current = defaultStore;
+                if (current == null) {
+                    String dir = System.getProperty("macrotracker.imageStore.dir",
+                            Paths.get(System.getProperty("user.home"), "macrotracker-images").toString());
+                    current = new ImageStore(Paths.get(dir));
+                    defaultStore = current;
+                    LOGGER.info("Image store at " + current.root.toAbsolutePath());
+                }
+            }
+        }
+        return current;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    // Where the image with this hash and type lives, whether or not it has been stored yet
+    public Path path(String contentHash, String mimeType) {
+        if (contentHash == null || contentHash.length() != 64 || !contentHash.chars().allMatch(ImageStore::isHexDigit)) {
+            throw new IllegalArgumentException("Not a SHA-256 hex digest: " + contentHash);
+        }
+        return root.resolve(contentHash.substring(0, 2))
+                .resolve(contentHash.substring(2, 4))
+                .resolve(contentHash + extension(mimeType));
+    }
+
+    public boolean contains(String contentHash, String mimeType) {
+        return Files.exists(path(contentHash, mimeType));
+    }
+
+    // Stores the image unless it is already present and returns its path. The caller supplies the
+    // hash of data (ImageUpload.sha256()); it is not recomputed here.
+    public Path put(String contentHash, String mimeType, ByteBuffer data) throws IOException {
+        Path target = path(contentHash, mimeType);
+        if (Files.exists(target)) {
+            return target;
+        }
+        Path dir = Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(dir, ".upload-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer view = data.duplicate();
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Stored concurrently by another request; same hash, same bytes
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    // Read-only mapping of the stored image; the file is never rewritten, so the mapping stays valid
+    public MappedByteBuffer map(String contentHash, String mimeType) throws IOException {
+        return map(path(contentHash, mimeType));
+    }
+
+    // Same, for a path put() returned
+    public static MappedByteBuffer map(Path stored) throws IOException {
+        try (FileChannel channel = FileChannel.open(stored, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public long size(String contentHash, String mimeType) throws IOException {
+        try {
+            return Files.size(path(contentHash, mimeType));
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    // Hex SHA-256 of the remaining bytes; data's position is left untouched
+    public static String sha256(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String extension(String mimeType) {
+        if (mimeType == null) {
+            return ".bin";
+        }
+        switch (mimeType) {
+            case "image/jpeg": return ".jpg";
+            case "image/png": return ".png";
+            case "image/gif": return ".gif";
+            case "image/webp": return ".webp";
+            case "image/heic": return ".heic";
+            default: return ".bin";
+        }
+    }
+
+    private static boolean isHexDigit(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+    }
+}
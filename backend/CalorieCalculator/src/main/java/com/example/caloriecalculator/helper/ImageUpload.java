@@ -0,0 +1,228 @@
+package com.example.caloriecalculator.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One uploaded image held off-heap in a pooled, fixed-size direct buffer.
+ *
+ * {@link #read} pulls the request body through an NIO channel straight into the buffer, checks
+ * the magic bytes as soon as the header has arrived and stops at the size limit, so no per-request
+ * heap copies of the photo are made. The bytes are written to disk once, by {@link ImageStore},
+ * and that file is what OpenAIHelper is given. Close the upload to hand the buffer back to the pool.
+ */
+public final class ImageUpload implements AutoCloseable {
+    public static final int MAX_BYTES = Integer.getInteger("macrotracker.upload.maxBytes", 8 * 1024 * 1024);
+    private static final int POOL_SIZE = Integer.getInteger("macrotracker.upload.buffers", 16);
+    private static final long BORROW_TIMEOUT_MILLIS = Long.getLong("macrotracker.upload.borrowTimeoutMillis", 2_000L);
+    private static final long RETRY_AFTER_SECONDS = Long.getLong("macrotracker.upload.retryAfterSeconds", 2L);
+    private static final int SNIFF_BYTES = 12;
+
+    private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static int allocated; // guarded by BUFFERS
+
+    private ByteBuffer buffer;
+    private String mimeType;
+    private String contentHash;
+
+    private ImageUpload(ByteBuffer buffer, String mimeType) {
+        this.buffer = buffer;
+        this.mimeType = mimeType;
+    }
+
+    // Reads a raw image body. Throws Rejected for non-images, oversized bodies or when every buffer is in use (with a Retry-After).
+    public static ImageUpload read(InputStream in) throws IOException {
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            ReadableByteChannel channel = Channels.newChannel(in);
+            String mimeType = null;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    // Full; one more byte means the image is over the limit
+                    if (channel.read(ByteBuffer.allocate(1)) > 0) {
+                        throw new Rejected(413, "Image is larger than " + MAX_BYTES + " bytes.");
+                    }
+                    break;
+                }
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+                if (mimeType == null && buffer.position() >= SNIFF_BYTES) {
+                    mimeType = sniff(buffer);
+                }
+            }
+            if (mimeType == null) {
+                mimeType = sniff(buffer);
+            }
+            buffer.flip();
+            return new ImageUpload(buffer, mimeType);
+        } catch (IOException | RuntimeException e) {
+            releaseBuffer(buffer);
+            throw e;
+        }
+    }
+
+    // Wraps already-decoded bytes (the legacy base64 JSON body) in a pooled buffer
+    public static ImageUpload wrap(byte[] bytes) throws IOException {
+        if (bytes.length > MAX_BYTES) {
+            throw new Rejected(413, "Image is larger than " + MAX_BYTES + " bytes.");
+        }
+        ByteBuffer buffer = borrowBuffer();
+        try {
+            buffer.put(bytes);
+            String mimeType = sniff(buffer);
+            buffer.flip();
+            return new ImageUpload(buffer, mimeType);
+        } catch (IOException | RuntimeException e) {
+            releaseBuffer(buffer);
+            throw e;
+        }
+    }
+
+    // Read-only view of the image bytes; each call has its own position
+    public ByteBuffer data() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    public int size() {
+        return buffer.limit();
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    // Hex SHA-256 of the image bytes, computed once
+    public String sha256() {
+        if (contentHash == null) {
+            contentHash = ImageStore.sha256(data());
+        }
+        return contentHash;
+    }
+
+    // Swaps in re-encoded bytes (see ImageResizer), reusing this upload's buffer
+    public void replace(byte[] bytes, int length, String mimeType) throws Rejected {
+        if (length > MAX_BYTES) {
+            throw new Rejected(413, "Image is larger than " + MAX_BYTES + " bytes.");
+        }
+        buffer.clear();
+        buffer.put(bytes, 0, length);
+        buffer.flip();
+        this.mimeType = mimeType;
+        this.contentHash = null;
+    }
+
+    @Override
+    public void close() {
+        if (buffer != null) {
+            releaseBuffer(buffer);
+            buffer = null;
+        }
+    }
+
+    // MIME type of already-decoded bytes (rows moved out of base64Input), or null if not a known image
+    public static String mimeTypeOf(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(Math.min(bytes.length, SNIFF_BYTES));
+        try {
+            return sniff(buffer);
+        } catch (Rejected e) {
+            return null;
+        }
+    }
+
+    // Identifies JPEG, PNG, GIF, WebP and HEIC/HEIF from the first bytes in the buffer
+    static String sniff(ByteBuffer buffer) throws Rejected {
+        int n = buffer.position();
+        if (n >= 3 && u(buffer, 0) == 0xFF && u(buffer, 1) == 0xD8 && u(buffer, 2) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (n >= 8 && u(buffer, 0) == 0x89 && ascii(buffer, 1, "PNG") && u(buffer, 4) == 0x0D && u(buffer, 5) == 0x0A
+                && u(buffer, 6) == 0x1A && u(buffer, 7) == 0x0A) {
+            return "image/png";
+        }
+        if (n >= 6 && (ascii(buffer, 0, "GIF87a") || ascii(buffer, 0, "GIF89a"))) {
+            return "image/gif";
+        }
+        if (n >= 12 && ascii(buffer, 0, "RIFF") && ascii(buffer, 8, "WEBP")) {
+            return "image/webp";
+        }
+        if (n >= 12 && ascii(buffer, 4, "ftyp")
+                && (ascii(buffer, 8, "heic") || ascii(buffer, 8, "heix") || ascii(buffer, 8, "mif1") || ascii(buffer, 8, "msf1"))) {
+            return "image/heic";
+        }
+        throw new Rejected(415, "Unsupported or corrupt image; expected JPEG, PNG, GIF, WebP or HEIC.");
+    }
+
+    private static int u(ByteBuffer buffer, int index) {
+        return buffer.get(index) & 0xFF;
+    }
+
+    private static boolean ascii(ByteBuffer buffer, int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer.get(offset + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer borrowBuffer() throws IOException {
+        ByteBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            synchronized (BUFFERS) {
+                // Allocate lazily up to POOL_SIZE; after that wait for one to come back
+                if (allocated < POOL_SIZE) {
+                    allocated++;
+                    return ByteBuffer.allocateDirect(MAX_BYTES);
+                }
+            }
+            try {
+                buffer = BUFFERS.poll(BORROW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for an upload buffer", e);
+            }
+            if (buffer == null) {
+                throw new Rejected(503, "Too many image uploads in progress.", RETRY_AFTER_SECONDS);
+            }
+        }
+        return buffer;
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        BUFFERS.offer(buffer);
+    }
+
+    // Upload refused before any model work; carries the HTTP status to answer with and, for
+    // overload refusals, how many seconds the client should wait (Retry-After)
+    public static class Rejected extends IOException {
+        private final int status;
+        private final long retryAfterSeconds;
+
+        public Rejected(int status, String message) {
+            this(status, message, 0);
+        }
+
+        public Rejected(int status, String message, long retryAfterSeconds) {
+            super(message);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
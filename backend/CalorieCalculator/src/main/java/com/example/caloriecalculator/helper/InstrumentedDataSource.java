@@ -0,0 +1,335 @@
+package com.example.caloriecalculator.helper;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Wraps the DataSource every DAO is given, so their JDBC time is reported as the DB phase in
+ * {@link Metrics} without touching the DAOs. Counted: waiting for a connection, statement
+ * execute* calls, commit and rollback. Reading rows from a ResultSet is not, since the driver has
+ * usually fetched them during execute.
+ *
+ * Each execute is also recorded in {@link SqlStats} under its SQL template, with the rows it
+ * changed or the rows then read from its result set. An execute slower than
+ * macrotracker.sql.slowMillis is logged with its template and the type of each bound parameter,
+ * such as String(12), but not the values, which can be password hashes or emails.
+ */
+public class InstrumentedDataSource implements DataSource {
+    private static final Logger LOGGER = Logger.getLogger(InstrumentedDataSource.class.getName());
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("macrotracker.sql.slowMillis", 250L));
+
+    private final DataSource delegate;
+
+    public InstrumentedDataSource(DataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return wrap(delegate.getConnection());
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.DB, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return wrap(delegate.getConnection(username, password));
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.DB, System.nanoTime() - start);
+        }
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TimedConnection(connection));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    // Calls on the target, with InvocationTargetException unwrapped
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object timed(Object target, Method method, Object[] args) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return call(target, method, args);
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.DB, System.nanoTime() - start);
+        }
+    }
+
+    /** Times commit and rollback, and hands out statements that time their executes. */
+    private static final class TimedConnection implements InvocationHandler {
+        private final Connection connection;
+
+        TimedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "commit":
+                case "rollback":
+                    return timed(connection, method, args);
+                case "createStatement":
+                    return statement(Statement.class, call(connection, method, args), proxy, null);
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, call(connection, method, args), proxy, (String) args[0]);
+                case "prepareCall":
+                    return statement(CallableStatement.class, call(connection, method, args), proxy, (String) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return call(connection, method, args);
+            }
+        }
+
+        private static Object statement(Class<? extends Statement> type, Object statement, Object connection, String sql) {
+            return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, new TimedStatement((Statement) statement, (Connection) connection, sql));
+        }
+    }
+
+    /**
+     * Times execute, executeQuery, executeUpdate, executeBatch and the rest of the family, and
+     * records them against the statement's SQL template. Bound values are only held while the
+     * statement holds them, and only ever described by type.
+     */
+    private static final class TimedStatement implements InvocationHandler {
+        private static final Object NULL = new Object();
+
+        private final Statement statement;
+        private final Connection connection;
+        private final SqlStats.Entry prepared; // null for a plain Statement
+        private Object[] parameters;
+        private int batchSize;
+
+        TimedStatement(Statement statement, Connection connection, String sql) {
+            this.statement = statement;
+            this.connection = connection;
+            this.prepared = sql != null ? SqlStats.forSql(sql) : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(proxy, method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") || args[1] == null ? NULL : args[1]);
+            }
+            switch (name) {
+                case "clearParameters":
+                    parameters = null;
+                    break;
+                case "addBatch":
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    break;
+                case "getResultSet":
+                    return rows(call(statement, method, args), proxy, prepared);
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            return call(statement, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            SqlStats.Entry entry = prepared != null || args == null || args.length == 0
+                    ? prepared
+                    : SqlStats.forSql(SqlStats.template((String) args[0]));
+            long start = System.nanoTime();
+            boolean failed = true;
+            Object result = null;
+            try {
+                result = call(statement, method, args);
+                failed = false;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                Metrics.recordPhase(Metrics.Phase.DB, elapsed);
+                if (entry != null) {
+                    entry.recordExecute(elapsed, failed);
+                    entry.recordRowsUpdated(updatedRows(result));
+                    if (elapsed >= SLOW_NANOS) {
+                        logSlow(entry, elapsed, failed);
+                    }
+                }
+                if (method.getName().equals("executeBatch") || method.getName().equals("executeLargeBatch")) {
+                    batchSize = 0;
+                }
+            }
+            return result instanceof ResultSet ? rows(result, proxy, entry) : result;
+        }
+
+        private void bind(int index, Object value) {
+            if (parameters == null || parameters.length < index) {
+                parameters = Arrays.copyOf(parameters != null ? parameters : new Object[0], Math.max(index, 8));
+            }
+            parameters[index - 1] = value;
+        }
+
+        private void logSlow(SqlStats.Entry entry, long nanos, boolean failed) {
+            StringBuilder message = new StringBuilder("Slow SQL (")
+                    .append(nanos / 1_000_000).append(" ms").append(failed ? ", failed" : "").append("): ")
+                    .append(entry.getSql());
+            if (batchSize > 0) {
+                message.append(" [batch of ").append(batchSize).append(']');
+            } else if (parameters != null) {
+                message.append(" [");
+                for (int i = 0; i < parameters.length; i++) {
+                    if (parameters[i] != null) {
+                        message.append(message.charAt(message.length() - 1) == '[' ? "" : ", ")
+                                .append(i + 1).append('=').append(redact(parameters[i]));
+                    }
+                }
+                message.append(']');
+            }
+            LOGGER.warning(message.toString());
+        }
+
+        // The type of a bound value, and the length of text; never the value itself
+        private static String redact(Object value) {
+            if (value == NULL) {
+                return "null";
+            }
+            if (value instanceof CharSequence) {
+                return "String(" + ((CharSequence) value).length() + ")";
+            }
+            if (value instanceof byte[]) {
+                return "byte[" + ((byte[]) value).length + "]";
+            }
+            return value.getClass().getSimpleName();
+        }
+
+        private static long updatedRows(Object result) {
+            if (result instanceof Integer) {
+                return Math.max(0, (Integer) result);
+            }
+            if (result instanceof Long) {
+                return Math.max(0, (Long) result);
+            }
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(0, count);
+                }
+            }
+            return rows;
+        }
+
+        private static Object rows(Object resultSet, Object statement, SqlStats.Entry entry) {
+            if (resultSet == null || entry == null) {
+                return resultSet;
+            }
+            return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new CountedRows((ResultSet) resultSet, (Statement) statement, entry));
+        }
+    }
+
+    /** Counts the rows read from a result set towards its statement. */
+    private static final class CountedRows implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Statement statement;
+        private final SqlStats.Entry entry;
+
+        CountedRows(ResultSet resultSet, Statement statement, SqlStats.Entry entry) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    Object more = call(resultSet, method, args);
+                    if (Boolean.TRUE.equals(more)) {
+                        entry.recordRowRead();
+                    }
+                    return more;
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return call(resultSet, method, args);
+            }
+        }
+    }
+}
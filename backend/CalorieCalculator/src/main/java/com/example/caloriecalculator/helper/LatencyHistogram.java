@@ -0,0 +1,79 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in the style of HdrHistogram: log-linear buckets in microseconds, exact below
+ * 16 µs and eight buckets per power of two above that, so any value is off by at most 12.5%.
+ * Values from 2^27 µs (about 134 s) up share the last bucket.
+ *
+ * Recording is one increment on an AtomicLongArray, with no locks or allocation, so request
+ * threads can record on every call. Readers take a {@link #snapshot()} while writers keep going.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MICROS_BITS = 27;
+    public static final int BUCKET_COUNT = (MAX_MICROS_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sumNanos = new LongAdder();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        sumNanos.add(Math.max(0, nanos));
+    }
+
+    static int indexOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    // Exclusive upper bound of a bucket in microseconds; the last bucket has none
+    public static long upperBoundMicros(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + 1 + index % SUB_BUCKETS) << shift;
+    }
+
+    // Per-bucket counts; each is read atomically, not the set as a whole
+    public long[] snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    // Upper bound in microseconds of the bucket holding the given percentile (0-100) of a snapshot
+    public static long percentileMicros(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(snapshot.length - 1);
+    }
+}
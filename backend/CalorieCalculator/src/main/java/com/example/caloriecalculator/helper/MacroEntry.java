@@ -0,0 +1,35 @@
+package com.example.caloriecalculator.helper;
+
+import java.math.BigDecimal;
+
+public class MacroEntry {
+    private int userId;
+    private String entryDate;
+    private String mealType;
+    private int calories;
+    private BigDecimal carbs;
+    private BigDecimal protein;
+    private BigDecimal fat;
+
+    // Getters and Setters
+    public int getUserId() { return userId; }
+    public void setUserId(int userId) { this.userId = userId; }
+
+    public String getEntryDate() { return entryDate; }
+    public void setEntryDate(String entryDate) { this.entryDate = entryDate; }
+
+    public String getMealType() { return mealType; }
+    public void setMealType(String mealType) { this.mealType = mealType; }
+
+    public int getCalories() { return calories; }
+    public void setCalories(int calories) { this.calories = calories; }
+
+    public BigDecimal getCarbs() { return carbs; }
+    public void setCarbs(BigDecimal carbs) { this.carbs = carbs; }
+
+    public BigDecimal getProtein() { return protein; }
+    public void setProtein(BigDecimal protein) { this.protein = protein; }
+
+    public BigDecimal getFat() { return fat; }
+    public void setFat(BigDecimal fat) { this.fat = fat; }
+}
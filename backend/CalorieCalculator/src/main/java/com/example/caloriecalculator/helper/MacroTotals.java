@@ -0,0 +1,40 @@
+package com.example.caloriecalculator.helper;
+
+import java.math.BigDecimal;
+
+// Summed macros for one day (and optionally one meal type)
+public class MacroTotals {
+    private String entryDate;
+    private String mealType; // Null when grouped by day only
+    private int calories;
+    private BigDecimal carbs;
+    private BigDecimal protein;
+    private BigDecimal fat;
+    private int entryCount;
+    private Integer requiredCalories; // Nullable, the user's goal when read for goal progress
+
+    // Getters and Setters
+    public String getEntryDate() { return entryDate; }
+    public void setEntryDate(String entryDate) { this.entryDate = entryDate; }
+
+    public String getMealType() { return mealType; }
+    public void setMealType(String mealType) { this.mealType = mealType; }
+
+    public int getCalories() { return calories; }
+    public void setCalories(int calories) { this.calories = calories; }
+
+    public BigDecimal getCarbs() { return carbs; }
+    public void setCarbs(BigDecimal carbs) { this.carbs = carbs; }
+
+    public BigDecimal getProtein() { return protein; }
+    public void setProtein(BigDecimal protein) { this.protein = protein; }
+
+    public BigDecimal getFat() { return fat; }
+    public void setFat(BigDecimal fat) { this.fat = fat; }
+
+    public int getEntryCount() { return entryCount; }
+    public void setEntryCount(int entryCount) { this.entryCount = entryCount; }
+
+    public Integer getRequiredCalories() { return requiredCalories; }
+    public void setRequiredCalories(Integer requiredCalories) { this.requiredCalories = requiredCalories; }
+}
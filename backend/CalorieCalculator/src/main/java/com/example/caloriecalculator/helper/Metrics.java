@@ -0,0 +1,197 @@
+package com.example.caloriecalculator.helper;
+
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics in Prometheus text format, served at /metrics.
+ *
+ * MetricsFilter times every request and counts it by endpoint (the servlet mapping, so unknown
+ * paths all land in "other") and status. Time spent in the database, in BCrypt and in model calls
+ * is reported with {@link #recordPhase} and added both to a per-call histogram for that phase and
+ * to the request running on the thread, so each endpoint also gets a histogram of how much of its
+ * requests went to each phase. Work handed to another thread keeps counting towards its request
+ * when wrapped with {@link #propagate}.
+ *
+ * Histograms are {@link LatencyHistogram}s, exported with buckets at every power of two and one
+ * and a half times that, from 256 µs to about 100 s.
+ */
+public final class Metrics {
+    public enum Phase {
+        DB("db"), BCRYPT("bcrypt"), MODEL("model");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    // Exported bucket bounds: the LatencyHistogram buckets ending at 2^k and 1.5 * 2^k µs, from 256 µs
+    private static final int FIRST_EXPORTED_BUCKET = LatencyHistogram.indexOf(256) - 1;
+    private static final int EXPORTED_BUCKET_STEP = 4;
+
+    private static final Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+    private static final LatencyHistogram[] PHASE_CALLS = new LatencyHistogram[PHASES.length];
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+
+    static {
+        for (int i = 0; i < PHASES.length; i++) {
+            PHASE_CALLS[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /** Phase time of one request, possibly added to from more than one thread. */
+    public static final class Request {
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASES.length);
+
+        private Request(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    private static final class Endpoint {
+        final LatencyHistogram duration = new LatencyHistogram();
+        final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Endpoint() {
+            for (int i = 0; i < PHASES.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    // Starts timing a request on this thread; pass the result to finish() when the response is done
+    public static Request begin(String endpoint) {
+        Request request = new Request(endpoint);
+        CURRENT.set(request);
+        inFlight.incrementAndGet();
+        return request;
+    }
+
+    // Stops attributing phases on this thread; the request itself may still be running elsewhere
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    public static void finish(Request request, int status) {
+        inFlight.decrementAndGet();
+        Endpoint endpoint = ENDPOINTS.computeIfAbsent(request.endpoint, name -> new Endpoint());
+        endpoint.duration.record(System.nanoTime() - request.startNanos);
+        endpoint.statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+        for (int i = 0; i < PHASES.length; i++) {
+            long nanos = request.phaseNanos.get(i);
+            if (nanos > 0) {
+                endpoint.phases[i].record(nanos);
+            }
+        }
+    }
+
+    public static void recordPhase(Phase phase, long nanos) {
+        PHASE_CALLS[phase.ordinal()].record(nanos);
+        Request request = CURRENT.get();
+        if (request != null) {
+            request.phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+    }
+
+    // Runs the task with the submitting thread's request, so its phases count towards that request
+    public static Runnable propagate(Runnable task) {
+        Request request = CURRENT.get();
+        if (request == null) {
+            return task;
+        }
+        return () -> {
+            Request previous = CURRENT.get();
+            CURRENT.set(request);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    CURRENT.set(previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        };
+    }
+
+    public static void write(PrintWriter out) {
+        Map<String, Endpoint> endpoints = new TreeMap<>(ENDPOINTS);
+
+        out.println("# HELP macrotracker_http_requests_total Requests by endpoint and response status.");
+        out.println("# TYPE macrotracker_http_requests_total counter");
+        for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> status : new TreeMap<>(endpoint.getValue().statuses).entrySet()) {
+                out.println("macrotracker_http_requests_total{endpoint=\"" + escape(endpoint.getKey())
+                        + "\",status=\"" + status.getKey() + "\"} " + status.getValue().sum());
+            }
+        }
+
+        out.println("# HELP macrotracker_http_requests_in_flight Requests started and not yet answered.");
+        out.println("# TYPE macrotracker_http_requests_in_flight gauge");
+        out.println("macrotracker_http_requests_in_flight " + inFlight.get());
+
+        out.println("# HELP macrotracker_http_request_duration_seconds Time from the request arriving to the response completing.");
+        out.println("# TYPE macrotracker_http_request_duration_seconds histogram");
+        for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+            writeHistogram(out, "macrotracker_http_request_duration_seconds",
+                    "endpoint=\"" + escape(endpoint.getKey()) + "\"", endpoint.getValue().duration);
+        }
+
+        out.println("# HELP macrotracker_http_request_phase_seconds Time a request spent in one phase, for requests that used it.");
+        out.println("# TYPE macrotracker_http_request_phase_seconds histogram");
+        for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+            for (Phase phase : PHASES) {
+                writeHistogram(out, "macrotracker_http_request_phase_seconds",
+                        "endpoint=\"" + escape(endpoint.getKey()) + "\",phase=\"" + phase.label + "\"",
+                        endpoint.getValue().phases[phase.ordinal()]);
+            }
+        }
+
+        out.println("# HELP macrotracker_phase_call_seconds Duration of single database, BCrypt and model calls.");
+        out.println("# TYPE macrotracker_phase_call_seconds histogram");
+        for (Phase phase : PHASES) {
+            writeHistogram(out, "macrotracker_phase_call_seconds", "phase=\"" + phase.label + "\"",
+                    PHASE_CALLS[phase.ordinal()]);
+        }
+    }
+
+    private static void writeHistogram(PrintWriter out, String name, String labels, LatencyHistogram histogram) {
+        long[] counts = histogram.snapshot();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length - 1; i++) {
+            cumulative += counts[i];
+            if (i >= FIRST_EXPORTED_BUCKET && (i - FIRST_EXPORTED_BUCKET) % EXPORTED_BUCKET_STEP == 0) {
+                out.println(name + "_bucket{" + labels + ",le=\""
+                        + seconds(LatencyHistogram.upperBoundMicros(i)) + "\"} " + cumulative);
+            }
+        }
+        cumulative += counts[counts.length - 1];
+        out.println(name + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative);
+        out.println(name + "_sum{" + labels + "} " + histogram.getSumNanos() / 1e9);
+        out.println(name + "_count{" + labels + "} " + cumulative);
+    }
+
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Executor for slow, I/O-bound work started from async servlets (model calls and the writes that
+ * follow them), so container request threads are handed back while it runs.
+ *
+ * Uses a virtual thread per task when the JVM has them (Java 21+); otherwise a pool of up to
+ * macrotracker.modelExecutor.maxThreads daemon platform threads, by default enough for every
+ * {@link ModelGateway} call and wait slot. At most macrotracker.modelExecutor.maxQueue more tasks
+ * wait for a thread; beyond that execute() throws RejectedExecutionException, as it does after
+ * shutdown ({@link #isShutdown} tells the two apart).
+ */
+public class ModelExecutor {
+    private static final Logger LOGGER = Logger.getLogger(ModelExecutor.class.getName());
+    private static final int MAX_THREADS = Integer.getInteger("macrotracker.modelExecutor.maxThreads",
+            ModelGateway.getMaxConcurrent() + ModelGateway.getMaxQueue());
+    private static final int MAX_QUEUE = Integer.getInteger("macrotracker.modelExecutor.maxQueue", 64);
+
+    private static volatile ExecutorService executor;
+
+    private ModelExecutor() {
+    }
+
+    public static ExecutorService get() {
+        ExecutorService current = executor;
+        if (current == null) {
+            synchronized (ModelExecutor.class) {
+                current = executor;
+                if (current == null) {
+                    current = create();
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ExecutorService create() {
+        try {
+            // Looked up reflectively so the code still compiles and runs on Java 17
+            ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.info("Model calls run on virtual threads");
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, "model-call-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    MAX_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUE), factory);
+            pool.allowCoreThreadTimeOut(true);
+            LOGGER.info("Model calls run on up to " + MAX_THREADS + " platform threads, " + MAX_QUEUE + " more queued");
+            return pool;
+        }
+    }
+
+    // True once shutdown() has run, so a rejected task can be told apart from a full queue
+    public static boolean isShutdown() {
+        ExecutorService current = executor;
+        return current == null || current.isShutdown();
+    }
+
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+            LOGGER.info("Model executor stopped");
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * The only way model calls reach {@link OpenAIHelper}: caps concurrent upstream calls, bounds how
+ * many requests wait for one, and stops calling a model that is failing or too slow.
+ *
+ * - At most macrotracker.modelGateway.maxConcurrent calls run at once. Up to
+ *   macrotracker.modelGateway.maxQueue more wait, each for at most queueTimeoutMillis. Beyond
+ *   that a request is refused straight away with 429. A wait that times out gets 503.
+ * - A circuit breaker watches the outcome of the last windowSize calls. Once at least minCalls have
+ *   finished, it opens if failureRatePercent of them threw or slowRatePercent took longer than
+ *   slowCallMillis. While open every call is refused with 503 for openMillis. After that,
+ *   halfOpenCalls trial calls decide whether it closes again or reopens.
+ *
+ * Refusals are {@link ImageUpload.Rejected} with a Retry-After, thrown before any upstream work, so
+ * callers can tell them apart from model errors.
+ *
+ * With macrotracker.model.url set, calls go to that endpoint through {@link HttpModelClient}
+ * instead of OpenAIHelper; the load test points it at its stub model.
+ */
+public final class ModelGateway {
+    private static final Logger LOGGER = Logger.getLogger(ModelGateway.class.getName());
+
+    private static final int MAX_CONCURRENT = Integer.getInteger("macrotracker.modelGateway.maxConcurrent", 16);
+    private static final int MAX_QUEUE = Integer.getInteger("macrotracker.modelGateway.maxQueue", 64);
+    private static final long QUEUE_TIMEOUT_MILLIS = Long.getLong("macrotracker.modelGateway.queueTimeoutMillis", 30_000L);
+    private static final long RETRY_AFTER_SECONDS = Long.getLong("macrotracker.modelGateway.retryAfterSeconds", 5L);
+    private static final int WINDOW_SIZE = Integer.getInteger("macrotracker.modelGateway.windowSize", 50);
+    private static final int MIN_CALLS = Integer.getInteger("macrotracker.modelGateway.minCalls", 10);
+    private static final int FAILURE_RATE_PERCENT = Integer.getInteger("macrotracker.modelGateway.failureRatePercent", 50);
+    private static final int SLOW_RATE_PERCENT = Integer.getInteger("macrotracker.modelGateway.slowRatePercent", 80);
+    private static final long SLOW_CALL_MILLIS = Long.getLong("macrotracker.modelGateway.slowCallMillis", 30_000L);
+    private static final long OPEN_MILLIS = Long.getLong("macrotracker.modelGateway.openMillis", 30_000L);
+    private static final int HALF_OPEN_CALLS = Integer.getInteger("macrotracker.modelGateway.halfOpenCalls", 3);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENT, true);
+    private static final AtomicInteger queued = new AtomicInteger();
+
+    // Circuit state, guarded by the class lock. The window is a ring of the latest outcomes.
+    private static State state = State.CLOSED;
+    private static long openedAt;
+    private static int trialsStarted;
+    private static int trialsSucceeded;
+    private static final boolean[] windowFailed = new boolean[WINDOW_SIZE];
+    private static final boolean[] windowSlow = new boolean[WINDOW_SIZE];
+    private static int windowCount;
+    private static int windowNext;
+    private static int windowFailures;
+    private static int windowSlowCalls;
+
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+    private static final AtomicLong slowCalls = new AtomicLong();
+    private static final AtomicLong queueFull = new AtomicLong();
+    private static final AtomicLong queueTimeouts = new AtomicLong();
+    private static final AtomicLong shortCircuited = new AtomicLong();
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicLong latencyNanos = new AtomicLong();
+    private static final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private ModelGateway() {
+    }
+
+    public static String callModelWithImage(String imagePath, String prompt) throws Exception {
+        checkAvailable();
+        acquirePermit();
+        try {
+            boolean trial = admit();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                String response = HttpModelClient.isConfigured()
+                        ? HttpModelClient.callModelWithImage(imagePath, prompt)
+                        : OpenAIHelper.callModelWithImage(imagePath, prompt);
+                failed = false;
+                return response;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                Metrics.recordPhase(Metrics.Phase.MODEL, elapsed);
+                boolean slow = elapsed > TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_MILLIS);
+                calls.incrementAndGet();
+                if (failed) {
+                    failures.incrementAndGet();
+                }
+                if (slow) {
+                    slowCalls.incrementAndGet();
+                }
+                latencyNanos.addAndGet(elapsed);
+                maxLatencyNanos.accumulateAndGet(elapsed, Math::max);
+                record(trial, failed, slow);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Fails fast while the circuit is open or the wait queue is full, so callers can skip work meant for the model
+    public static void checkAvailable() throws ImageUpload.Rejected {
+        if (permits.availablePermits() == 0 && queued.get() >= MAX_QUEUE) {
+            queueFull.incrementAndGet();
+            throw new ImageUpload.Rejected(429, "Too many image queries in progress.", RETRY_AFTER_SECONDS);
+        }
+        long retryAfterMillis;
+        synchronized (ModelGateway.class) {
+            if (state != State.OPEN) {
+                return;
+            }
+            retryAfterMillis = OPEN_MILLIS - (System.currentTimeMillis() - openedAt);
+            if (retryAfterMillis <= 0) {
+                return; // due for a trial call; admit() decides
+            }
+        }
+        shortCircuited.incrementAndGet();
+        throw new ImageUpload.Rejected(503, "Food recognition is temporarily unavailable.", toRetrySeconds(retryAfterMillis));
+    }
+
+    private static void acquirePermit() throws ImageUpload.Rejected, InterruptedException {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > MAX_QUEUE) {
+            queued.decrementAndGet();
+            queueFull.incrementAndGet();
+            throw new ImageUpload.Rejected(429, "Too many image queries in progress.", RETRY_AFTER_SECONDS);
+        }
+        try {
+            if (!permits.tryAcquire(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                queueTimeouts.incrementAndGet();
+                throw new ImageUpload.Rejected(503, "Food recognition is busy.", RETRY_AFTER_SECONDS);
+            }
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    // Lets a call through the circuit; true if it is a half-open trial
+    private static synchronized boolean admit() throws ImageUpload.Rejected {
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN) {
+            long retryAfterMillis = OPEN_MILLIS - (now - openedAt);
+            if (retryAfterMillis > 0) {
+                shortCircuited.incrementAndGet();
+                throw new ImageUpload.Rejected(503, "Food recognition is temporarily unavailable.", toRetrySeconds(retryAfterMillis));
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+            LOGGER.info("Model circuit half-open; sending " + HALF_OPEN_CALLS + " trial calls");
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= HALF_OPEN_CALLS) {
+                shortCircuited.incrementAndGet();
+                throw new ImageUpload.Rejected(503, "Food recognition is temporarily unavailable.", RETRY_AFTER_SECONDS);
+            }
+            trialsStarted++;
+            return true;
+        }
+        return false;
+    }
+
+    private static synchronized void record(boolean trial, boolean failed, boolean slow) {
+        if (trial) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            if (failed || slow) {
+                open("trial call " + (failed ? "failed" : "was slow"));
+            } else if (++trialsSucceeded >= HALF_OPEN_CALLS) {
+                state = State.CLOSED;
+                resetWindow();
+                LOGGER.info("Model circuit closed");
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            return; // finished after the circuit opened; already accounted for
+        }
+        if (windowCount == WINDOW_SIZE) {
+            windowFailures -= windowFailed[windowNext] ? 1 : 0;
+            windowSlowCalls -= windowSlow[windowNext] ? 1 : 0;
+        } else {
+            windowCount++;
+        }
+        windowFailed[windowNext] = failed;
+        windowSlow[windowNext] = slow;
+        windowFailures += failed ? 1 : 0;
+        windowSlowCalls += slow ? 1 : 0;
+        windowNext = (windowNext + 1) % WINDOW_SIZE;
+
+        if (windowCount >= MIN_CALLS) {
+            if (windowFailures * 100 >= FAILURE_RATE_PERCENT * windowCount) {
+                open(windowFailures + " of the last " + windowCount + " calls failed");
+            } else if (windowSlowCalls * 100 >= SLOW_RATE_PERCENT * windowCount) {
+                open(windowSlowCalls + " of the last " + windowCount + " calls took over " + SLOW_CALL_MILLIS + " ms");
+            }
+        }
+    }
+
+    // Caller holds the class lock
+    private static void open(String reason) {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        opened.incrementAndGet();
+        resetWindow();
+        LOGGER.warning("Model circuit open for " + OPEN_MILLIS + " ms: " + reason);
+    }
+
+    private static void resetWindow() {
+        windowCount = 0;
+        windowNext = 0;
+        windowFailures = 0;
+        windowSlowCalls = 0;
+    }
+
+    private static long toRetrySeconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    public static synchronized State getState() {
+        return state;
+    }
+
+    public static int getActiveCalls() {
+        return MAX_CONCURRENT - permits.availablePermits();
+    }
+
+    public static int getQueueDepth() {
+        return queued.get();
+    }
+
+    public static int getMaxConcurrent() {
+        return MAX_CONCURRENT;
+    }
+
+    public static int getMaxQueue() {
+        return MAX_QUEUE;
+    }
+
+    public static long getRetryAfterSeconds() {
+        return RETRY_AFTER_SECONDS;
+    }
+
+    public static long getCallCount() {
+        return calls.get();
+    }
+
+    public static long getFailureCount() {
+        return failures.get();
+    }
+
+    public static long getSlowCallCount() {
+        return slowCalls.get();
+    }
+
+    public static long getQueueFullCount() {
+        return queueFull.get();
+    }
+
+    public static long getQueueTimeoutCount() {
+        return queueTimeouts.get();
+    }
+
+    public static long getShortCircuitedCount() {
+        return shortCircuited.get();
+    }
+
+    public static long getOpenedCount() {
+        return opened.get();
+    }
+
+    public static double getAverageLatencyMillis() {
+        long count = calls.get();
+        return count == 0 ? 0.0 : latencyNanos.get() / 1_000_000.0 / count;
+    }
+
+    public static double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+}
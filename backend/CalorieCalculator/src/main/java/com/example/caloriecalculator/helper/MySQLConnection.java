@@ -1,15 +1,71 @@
 package com.example.caloriecalculator.helper;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class MySQLConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/macrotracker";
-    private static final String USER = "root";
-    private static final String PASSWORD = "aryan1976";
+    // useCursorFetch lets statements with a fetch size read through a server-side cursor;
+    // rewriteBatchedStatements sends a JDBC batch as multi-row INSERTs instead of one statement per row;
+    // useServerPrepStmts prepares statements on the server, where the pool's statement cache keeps them
+    // Overridable with -Dmacrotracker.db.url/user/password, e.g. to point the load test at an embedded database
+    private static final String URL = System.getProperty("macrotracker.db.url",
+            "jdbc:mysql://localhost:3306/macrotracker?useCursorFetch=true&rewriteBatchedStatements=true&useServerPrepStmts=true");
+    private static final String USER = System.getProperty("macrotracker.db.user", "root");
+    private static final String PASSWORD = System.getProperty("macrotracker.db.password", "aryan1976");
 
+    // Pool sizing, overridable with -Dmacrotracker.pool.<name>=<value>
+    private static final int MIN_SIZE = Integer.getInteger("macrotracker.pool.minSize", 2);
+    private static final int MAX_SIZE = Integer.getInteger("macrotracker.pool.maxSize", 20);
+    private static final long IDLE_TIMEOUT_MILLIS = Long.getLong("macrotracker.pool.idleTimeoutMillis", 300_000L);
+    private static final long BORROW_TIMEOUT_MILLIS = Long.getLong("macrotracker.pool.borrowTimeoutMillis", 5_000L);
+    private static final int VALIDATION_TIMEOUT_SECONDS = Integer.getInteger("macrotracker.pool.validationTimeoutSeconds", 2);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("macrotracker.pool.statementCacheSize", 64);
+
+    private static volatile ConnectionPool pool;
+    private static volatile DataSource dataSource;
+
+    // Shared pool used by every DAO, timed for /metrics; created lazily on first use
+    public static DataSource getDataSource() {
+        DataSource current = dataSource;
+        if (current == null) {
+            synchronized (MySQLConnection.class) {
+                current = dataSource;
+                if (current == null) {
+                    current = new InstrumentedDataSource(getPool());
+                    dataSource = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // The pool itself, for its counters
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (MySQLConnection.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(URL, USER, PASSWORD, MIN_SIZE, MAX_SIZE,
+                            IDLE_TIMEOUT_MILLIS, BORROW_TIMEOUT_MILLIS, VALIDATION_TIMEOUT_SECONDS, STATEMENT_CACHE_SIZE);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Borrows a pooled connection; closing it returns it to the pool
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        return getDataSource().getConnection();
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            dataSource = null;
+        }
     }
 }
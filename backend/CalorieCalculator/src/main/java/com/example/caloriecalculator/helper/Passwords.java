@@ -0,0 +1,30 @@
+package com.example.caloriecalculator.helper;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * BCrypt hashing and checking, timed as the BCrypt phase in {@link Metrics}. A check costs tens
+ * of milliseconds by design, so on /login it is usually the largest phase.
+ */
+public final class Passwords {
+    private Passwords() {
+    }
+
+    public static String hash(String password) {
+        long start = System.nanoTime();
+        try {
+            return BCrypt.hashpw(password, BCrypt.gensalt());
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.BCRYPT, System.nanoTime() - start);
+        }
+    }
+
+    public static boolean check(String password, String hashedPassword) {
+        long start = System.nanoTime();
+        try {
+            return BCrypt.checkpw(password, hashedPassword);
+        } finally {
+            Metrics.recordPhase(Metrics.Phase.BCRYPT, System.nanoTime() - start);
+        }
+    }
+}
@@ -13,6 +13,7 @@ public class ScannedFood {
     private BigDecimal protein;
     private BigDecimal fat;
     private Timestamp scannedDate;
+    private boolean shared; // true when the row comes from the global food_catalog
 
     // Constructor
     public ScannedFood(int foodId, String userId, String barcode, String foodName, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat, Timestamp scannedDate) {
@@ -64,6 +65,10 @@ public class ScannedFood {
         return scannedDate;
     }
 
+    public boolean isShared() {
+        return shared;
+    }
+
     // Setters
     public void setFoodId(int foodId) {
         this.foodId = foodId;
@@ -101,6 +106,10 @@ public class ScannedFood {
         this.scannedDate = scannedDate;
     }
 
+    public void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
     // ToString Method
     @Override
     public String toString() {
@@ -114,6 +123,7 @@ public class ScannedFood {
                 ", protein=" + protein +
                 ", fat=" + fat +
                 ", scannedDate=" + scannedDate +
+                ", shared=" + shared +
                 '}';
     }
 }
\ No newline at end of file
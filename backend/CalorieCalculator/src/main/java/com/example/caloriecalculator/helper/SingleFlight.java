@@ -0,0 +1,82 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses concurrent calls for the same key into one. The first caller runs the work; callers
+ * arriving while it runs wait for it and get the same result or exception. Nothing is kept once
+ * the work finishes (caching is up to the caller). Named instances register themselves like
+ * {@link BoundedCache} so their counters can be reported.
+ */
+public class SingleFlight<K, V> {
+    private static final Map<String, SingleFlight<?, ?>> REGISTRY = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+        REGISTRY.put(name, this);
+    }
+
+    // Runs work unless a call for key is already running, in which case waits up to timeoutMillis for its outcome
+    public V run(K key, Callable<V> work, long timeoutMillis) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            try {
+                return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw (Error) e.getCause();
+            } catch (TimeoutException e) {
+                throw new TimeoutException("Timed out waiting for the same request already in progress");
+            }
+        }
+
+        executed.increment();
+        try {
+            V value = work.call();
+            mine.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    public static Map<String, SingleFlight<?, ?>> registered() {
+        return Collections.unmodifiableMap(REGISTRY);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.caloriecalculator.helper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-statement counters kept by {@link InstrumentedDataSource}, keyed by SQL template: the text
+ * given to prepareStatement, or for plain statements the SQL with its literals replaced by "?".
+ * Counts executions, errors, total and max execute time, rows read from result sets and rows
+ * changed by updates.
+ *
+ * At most macrotracker.sql.maxStatements templates are tracked; statements past that are added
+ * up under "(other)" so dynamically built SQL can't grow the map without bound.
+ */
+public final class SqlStats {
+    private static final int MAX_STATEMENTS = Integer.getInteger("macrotracker.sql.maxStatements", 1_000);
+    static final String OTHER = "(other)";
+
+    private static final Map<String, Entry> STATEMENTS = new ConcurrentHashMap<>();
+
+    private SqlStats() {
+    }
+
+    public enum Order {
+        TOTAL(Comparator.comparingLong(Entry::getTotalNanos)),
+        MAX(Comparator.comparingLong(Entry::getMaxNanos)),
+        COUNT(Comparator.comparingLong(Entry::getCount)),
+        ROWS(Comparator.comparingLong(entry -> entry.getRowsRead() + entry.getRowsUpdated()));
+
+        private final Comparator<Entry> comparator;
+
+        Order(Comparator<Entry> comparator) {
+            this.comparator = comparator;
+        }
+    }
+
+    /** Counters for one SQL template. */
+    public static final class Entry {
+        private final String sql;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rowsRead = new LongAdder();
+        private final LongAdder rowsUpdated = new LongAdder();
+
+        private Entry(String sql) {
+            this.sql = sql;
+        }
+
+        void recordExecute(long nanos, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        void recordRowRead() {
+            rowsRead.increment();
+        }
+
+        void recordRowsUpdated(long rows) {
+            rowsUpdated.add(rows);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getRowsRead() {
+            return rowsRead.sum();
+        }
+
+        public long getRowsUpdated() {
+            return rowsUpdated.sum();
+        }
+
+        public double getAverageMillis() {
+            long executions = count.sum();
+            return executions == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / executions;
+        }
+    }
+
+    static Entry forSql(String sql) {
+        Entry entry = STATEMENTS.get(sql);
+        if (entry != null) {
+            return entry;
+        }
+        if (STATEMENTS.size() >= MAX_STATEMENTS) {
+            return STATEMENTS.computeIfAbsent(OTHER, Entry::new);
+        }
+        return STATEMENTS.computeIfAbsent(sql, Entry::new);
+    }
+
+    // The first n templates, largest first by the given order
+    public static List<Entry> top(int n, Order order) {
+        List<Entry> entries = new ArrayList<>(STATEMENTS.values());
+        entries.sort(order.comparator.reversed());
+        return entries.subList(0, Math.min(Math.max(n, 0), entries.size()));
+    }
+
+    public static int size() {
+        return STATEMENTS.size();
+    }
+
+    // Template for SQL run through a plain Statement: quoted strings and numbers become "?"
+    static String template(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int end = i + 1;
+                while (end < sql.length()) {
+                    if (sql.charAt(end) == c) {
+                        if (end + 1 < sql.length() && sql.charAt(end + 1) == c) {
+                            end += 2; // doubled quote inside the literal
+                            continue;
+                        }
+                        break;
+                    }
+                    end += sql.charAt(end) == '\\' ? 2 : 1;
+                }
+                out.append('?');
+                i = end + 1;
+            } else if (Character.isDigit(c) && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)) && sql.charAt(i - 1) != '_')) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+}
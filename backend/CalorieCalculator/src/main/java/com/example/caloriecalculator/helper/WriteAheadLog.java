@@ -0,0 +1,404 @@
+package com.example.caloriecalculator.helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of opaque records in a directory of segment files, for work that has to
+ * survive a crash between being acknowledged and being applied.
+ *
+ * Every record gets the next sequence number and is stored as [sequence][length][CRC32C][payload].
+ * append() returns once the record is on disk. A background thread fsyncs the open segment every
+ * groupCommitMillis, so concurrent appends share one fsync instead of paying for one each.
+ * Segments are named after their first sequence number and a new one is started when the current
+ * one passes segmentBytes. The caller reports progress with release(); sealed segments whose
+ * records are all released are deleted.
+ *
+ * open() scans the existing segments and hands every intact record to the caller. A torn record
+ * at the end of the last segment is the write a crash interrupted; the segment is cut back to
+ * the last whole record. Each directory has a random id, so a consumer can keep a checkpoint per
+ * log. Appends always go to a new segment, so sequence numbers keep rising across restarts even
+ * once every older segment has been deleted.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+    private static final String SUFFIX = ".wal";
+    private static final String ID_FILE = "log.id";
+    private static final int HEADER_BYTES = 16;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(long sequence, byte[] payload) throws IOException;
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long groupCommitNanos;
+    private final Thread flusher;
+    private volatile boolean closed;
+    // Set when a write or fsync fails; the log stops taking records until it is reopened
+    private volatile IOException failure;
+
+    // Guarded by this: the open segment and the next sequence number
+    private FileChannel channel;
+    private long segmentFirst;
+    private long segmentSize;
+    private long nextSequence;
+    private long writtenSequence;
+    private volatile long durableSequence;
+
+    // Guarded by itself: sealed segments by first sequence, with their last sequence
+    private final TreeMap<Long, Long> sealed = new TreeMap<>();
+    private long releasedSequence;
+
+    private WriteAheadLog(Path dir, long segmentBytes, long groupCommitMillis) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, groupCommitMillis));
+        this.flusher = new Thread(this::flushLoop, "wal-group-commit-" + dir.getFileName());
+        this.flusher.setDaemon(true);
+    }
+
+    // The directory's log id, created with the directory on first use
+    public static String idOf(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Path idFile = dir.resolve(ID_FILE);
+        if (!Files.exists(idFile)) {
+            Path tmp = Files.createTempFile(dir, ID_FILE, ".tmp");
+            Files.write(tmp, UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII));
+            try {
+                Files.move(tmp, idFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                if (!Files.exists(idFile)) {
+                    throw e;
+                }
+            }
+        }
+        return new String(Files.readAllBytes(idFile), StandardCharsets.US_ASCII).trim();
+    }
+
+    // Recovers the log in dir, passing every intact record to recovered in order, and opens it for appends
+    public static WriteAheadLog open(Path dir, long segmentBytes, long groupCommitMillis, RecordHandler recovered) throws IOException {
+        idOf(dir);
+        WriteAheadLog log = new WriteAheadLog(dir, segmentBytes, groupCommitMillis);
+        long lastSequence = 0;
+        List<Path> segments = segments(dir);
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long first = firstSequence(segment);
+            long last = log.recover(segment, i == segments.size() - 1, recovered);
+            lastSequence = Math.max(lastSequence, Math.max(first - 1, last));
+            if (last < first) {
+                Files.delete(segment); // nothing in it
+            } else {
+                log.sealed.put(first, last);
+            }
+        }
+        log.nextSequence = lastSequence + 1;
+        log.writtenSequence = lastSequence;
+        log.durableSequence = lastSequence;
+        log.startSegment();
+        log.flusher.start();
+        return log;
+    }
+
+    // Writes payload as the next record and returns its sequence once it is on disk. assigned, if
+    // given, is called with the sequence while the log is still locked, so callers can queue
+    // records in sequence order.
+    public long append(byte[] payload, LongConsumer assigned) throws IOException {
+        if (payload.length > MAX_RECORD_BYTES) {
+            throw new IOException("Record of " + payload.length + " bytes is too large");
+        }
+        long sequence;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Write-ahead log failed earlier", failure);
+            }
+            sequence = nextSequence++;
+            ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+            record.putLong(sequence).putInt(payload.length).putInt(crc(sequence, payload)).put(payload).flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            } catch (IOException e) {
+                fail(e); // the record may be half written
+                throw e;
+            }
+            segmentSize += record.capacity();
+            writtenSequence = sequence;
+            if (assigned != null) {
+                assigned.accept(sequence);
+            }
+            if (segmentSize >= segmentBytes) {
+                rollSegment();
+            }
+        }
+        awaitDurable(sequence);
+        return sequence;
+    }
+
+    // Everything up to sequence has been applied; deletes the sealed segments it covers
+    public void release(long sequence) {
+        List<Path> deletable = new ArrayList<>();
+        synchronized (sealed) {
+            releasedSequence = Math.max(releasedSequence, sequence);
+            while (!sealed.isEmpty() && sealed.firstEntry().getValue() <= releasedSequence) {
+                deletable.add(segmentPath(sealed.pollFirstEntry().getKey()));
+            }
+        }
+        for (Path segment : deletable) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete applied log segment " + segment, e);
+            }
+        }
+    }
+
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    public int getSegmentCount() {
+        synchronized (sealed) {
+            return sealed.size() + 1;
+        }
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.force(false);
+                durableSequence = writtenSequence;
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing write-ahead log", e);
+            }
+            notifyAll();
+        }
+        flusher.interrupt();
+    }
+
+    private void awaitDurable(long sequence) throws IOException {
+        boolean interrupted = false;
+        synchronized (this) {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new IOException("Write-ahead log failed before the record was synced", failure);
+                }
+                if (closed) {
+                    throw new IOException("Write-ahead log closed before the record was synced");
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the record is already written; wait for it to be durable
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(groupCommitNanos);
+            FileChannel current;
+            long target;
+            synchronized (this) {
+                if (closed || writtenSequence == durableSequence) {
+                    continue;
+                }
+                current = channel;
+                target = writtenSequence;
+            }
+            try {
+                current.force(false); // appends carry on while the disk syncs
+            } catch (ClosedChannelException e) {
+                continue; // rolled or closed; that synced it
+            } catch (IOException e) {
+                // After a failed fsync the page cache can't be trusted to reach the disk
+                synchronized (this) {
+                    fail(e);
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (target > durableSequence) {
+                    durableSequence = target;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // Caller holds this
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            LOGGER.log(Level.SEVERE, "Write-ahead log in " + dir + " failed; no more records are accepted", e);
+        }
+        notifyAll();
+    }
+
+    // Caller holds this
+    private void rollSegment() throws IOException {
+        long first = segmentFirst;
+        try {
+            channel.force(false);
+            if (writtenSequence > durableSequence) {
+                durableSequence = writtenSequence;
+                notifyAll();
+            }
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        } finally {
+            channel.close();
+        }
+        synchronized (sealed) {
+            if (nextSequence > first) {
+                sealed.put(first, nextSequence - 1);
+            }
+        }
+        if (nextSequence == first) {
+            Files.deleteIfExists(segmentPath(first));
+        }
+        startSegment();
+    }
+
+    // Caller holds this, or is open()
+    private void startSegment() throws IOException {
+        segmentFirst = nextSequence;
+        Path segment = segmentPath(nextSequence);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentSize = 0;
+        forceDirectory();
+    }
+
+    // Reads one segment; returns the last intact sequence in it, or first - 1 if there is none
+    private long recover(Path segment, boolean last, RecordHandler recovered) throws IOException {
+        long first = firstSequence(segment);
+        long lastSequence = first - 1;
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position < size) {
+                header.clear();
+                if (readFully(in, header, position) < HEADER_BYTES) {
+                    break;
+                }
+                header.flip();
+                long sequence = header.getLong();
+                int length = header.getInt();
+                int crc = header.getInt();
+                if (length < 0 || length > MAX_RECORD_BYTES || sequence <= lastSequence || position + HEADER_BYTES + length > size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(in, payload, position + HEADER_BYTES);
+                if (crc(sequence, payload.array()) != crc) {
+                    break;
+                }
+                recovered.accept(sequence, payload.array());
+                lastSequence = sequence;
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                if (last) {
+                    LOGGER.warning("Discarding a torn record at the end of " + segment + " (" + (size - position) + " bytes)");
+                    in.truncate(position);
+                    in.force(true);
+                } else {
+                    LOGGER.severe("Log segment " + segment + " is damaged after sequence " + lastSequence
+                            + "; " + (size - position) + " bytes skipped");
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private void forceDirectory() {
+        // Makes a new segment's directory entry durable; not supported everywhere
+        try (FileChannel d = FileChannel.open(dir, StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Directory fsync not supported", e);
+        }
+    }
+
+    private static int crc(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(8).putLong(sequence).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return dir.resolve(String.format("%020d", firstSequence) + SUFFIX);
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        Map<Long, Path> ordered = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                ordered.put(firstSequence(file), file);
+            }
+        }
+        return new ArrayList<>(ordered.values());
+    }
+}
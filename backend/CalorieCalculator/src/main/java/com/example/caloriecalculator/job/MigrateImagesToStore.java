@@ -0,0 +1,28 @@
+package com.example.caloriecalculator.job;
+
+import com.example.caloriecalculator.dao.imagedao;
+import com.example.caloriecalculator.helper.ImageStore;
+import com.example.caloriecalculator.helper.MySQLConnection;
+
+/**
+ * Moves images still held as base64Input in image_queries out of MySQL into the ImageStore
+ * (macrotracker.imageStore.dir), leaving contentHash, imageSize and mimeType on each row.
+ * Safe to stop and rerun; rows already moved are skipped.
+ *
+ * Usage: MigrateImagesToStore              (100 rows per transaction)
+ *        MigrateImagesToStore <batchSize>
+ */
+public class MigrateImagesToStore {
+
+    public static void main(String[] args) throws Exception {
+        imagedao dao = new imagedao(MySQLConnection.getDataSource());
+        try {
+            long start = System.currentTimeMillis();
+            int moved = dao.moveImagesToStore(args.length > 0 ? Integer.parseInt(args[0]) : 100);
+            System.out.println("Moved " + moved + " images to " + ImageStore.getDefault().getRoot().toAbsolutePath()
+                    + " in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            MySQLConnection.shutdown();
+        }
+    }
+}
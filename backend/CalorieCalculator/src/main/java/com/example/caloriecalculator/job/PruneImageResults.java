@@ -0,0 +1,25 @@
+package com.example.caloriecalculator.job;
+
+import com.example.caloriecalculator.dao.CachedImageResultDao;
+import com.example.caloriecalculator.dao.ImageResultDao;
+import com.example.caloriecalculator.helper.MySQLConnection;
+
+/**
+ * Enforces the image result cache limits in MySQL: drops rows past the TTL, then the least
+ * recently used rows beyond macrotracker.imageCache.maxRows. Meant to run from cron.
+ *
+ * Usage: PruneImageResults
+ */
+public class PruneImageResults {
+
+    public static void main(String[] args) throws Exception {
+        ImageResultDao dao = new ImageResultDao(MySQLConnection.getDataSource());
+        try {
+            long start = System.currentTimeMillis();
+            int removed = dao.prune(CachedImageResultDao.TTL_MILLIS, CachedImageResultDao.MAX_ROWS);
+            System.out.println("Removed " + removed + " image_results rows in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            MySQLConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.caloriecalculator.job;
+
+import com.example.caloriecalculator.dao.DailyTotalsDao;
+import com.example.caloriecalculator.helper.MySQLConnection;
+
+/**
+ * Repairs the daily_totals rollup by recomputing it from macro_entries.
+ *
+ * Usage: RebuildDailyTotals            (every user)
+ *        RebuildDailyTotals <userId>   (one user)
+ */
+public class RebuildDailyTotals {
+
+    public static void main(String[] args) throws Exception {
+        DailyTotalsDao dao = new DailyTotalsDao(MySQLConnection.getDataSource());
+        try {
+            long start = System.currentTimeMillis();
+            int days = args.length > 0 ? dao.rebuild(Integer.parseInt(args[0])) : dao.rebuildAll();
+            System.out.println("Rebuilt " + days + " daily_totals rows in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            MySQLConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.MacroWriteBehind;
+import com.example.caloriecalculator.helper.ImageResizer;
+import com.example.caloriecalculator.helper.ModelExecutor;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@WebListener
+public class AppContextListener implements ServletContextListener {
+    private static final Logger LOGGER = Logger.getLogger(AppContextListener.class.getName());
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Replay macro entries a crash left in the write-behind log
+        if (MacroWriteBehind.isEnabled()) {
+            try {
+                MacroWriteBehind.get();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Unable to open the write-behind log; macros will be written directly", e);
+            }
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Let in-flight image queries finish their writes before the pool goes away
+        ModelExecutor.shutdown();
+        ImageResizer.shutdown();
+        MacroWriteBehind.shutdown();
+        // Close pooled connections on undeploy so redeploys don't leak sockets
+        MySQLConnection.shutdown();
+    }
+}
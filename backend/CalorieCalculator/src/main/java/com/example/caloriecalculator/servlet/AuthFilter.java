@@ -0,0 +1,72 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.helper.AccessTokens;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Checks "Authorization: Bearer &lt;token&gt;" on every request with {@link AccessTokens}: no session,
+ * database or BCrypt work. A valid token records its userId on the request; a bad or expired one
+ * is answered with 401 here. Requests without the header pass through unchanged, for clients that
+ * predate tokens. Servlets that need to know who is calling use {@link #authenticatedUserId}.
+ *
+ * Operator endpoints check {@link #isAdmin} instead: the request must carry the configured
+ * macrotracker.admin.token in an X-Admin-Token header. With no token configured they are closed.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class AuthFilter implements Filter {
+    static final String USER_ID_ATTRIBUTE = "authenticatedUserId";
+    private static final String ADMIN_TOKEN = System.getProperty("macrotracker.admin.token", "");
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        String header = request.getHeader("Authorization");
+        if (header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            Integer userId = AccessTokens.verify(header.substring(7).trim());
+            if (userId == null) {
+                HttpServletResponse response = (HttpServletResponse) res;
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.setHeader("WWW-Authenticate", "Bearer error=\"invalid_token\"");
+                response.setCharacterEncoding("UTF-8");
+                response.setContentType("application/json");
+                response.getWriter().print(new JSONObject()
+                        .put("success", false)
+                        .put("message", "Invalid or expired token.").toString());
+                return;
+            }
+            request.setAttribute(USER_ID_ATTRIBUTE, userId);
+        }
+        chain.doFilter(req, res);
+    }
+
+    // The caller's userId from a verified token, else from the login session; null if neither
+    static Integer authenticatedUserId(HttpServletRequest request) {
+        Object userId = request.getAttribute(USER_ID_ATTRIBUTE);
+        if (userId == null) {
+            HttpSession session = request.getSession(false);
+            userId = session != null ? session.getAttribute("userId") : null;
+        }
+        return (Integer) userId;
+    }
+
+    // True if the request carries the admin token; compared in constant time
+    static boolean isAdmin(HttpServletRequest request) {
+        String given = request.getHeader("X-Admin-Token");
+        return !ADMIN_TOKEN.isEmpty() && given != null
+                && MessageDigest.isEqual(ADMIN_TOKEN.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.DailyTotalsDao;
+import com.example.caloriecalculator.helper.MacroTotals;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Totals for one day and progress against the calorie goal, read from the daily_totals rollup; only for the signed-in user
+@WebServlet("/DailyTotals")
+public class DailyTotalsServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(DailyTotalsServlet.class.getName());
+    private DailyTotalsDao dailyTotalsDao;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        dailyTotalsDao = new DailyTotalsDao(MySQLConnection.getDataSource());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        try (PrintWriter out = response.getWriter()) {
+            try {
+                int userId = Integer.parseInt(request.getParameter("userId"));
+                String entryDate = request.getParameter("entryDate") != null
+                        ? LocalDate.parse(request.getParameter("entryDate")).toString()
+                        : LocalDate.now().toString();
+
+                Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
+                if (authenticatedUserId == null) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    out.print(new JSONObject()
+                            .put("success", false)
+                            .put("message", "Sign in to see daily totals.").toString());
+                    return;
+                }
+                if (authenticatedUserId != userId) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    out.print(new JSONObject()
+                            .put("success", false)
+                            .put("message", "Cannot read another user's totals.").toString());
+                    return;
+                }
+
+                MacroTotals totals = dailyTotalsDao.getDailyTotals(userId, entryDate);
+                if (totals == null) {
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    out.print(new JSONObject()
+                            .put("success", false)
+                            .put("message", "User not found.").toString());
+                    return;
+                }
+
+                JSONObject jsonResponse = new JSONObject()
+                        .put("success", true)
+                        .put("entryDate", totals.getEntryDate())
+                        .put("calories", totals.getCalories())
+                        .put("carbs", totals.getCarbs())
+                        .put("protein", totals.getProtein())
+                        .put("fat", totals.getFat())
+                        .put("entries", totals.getEntryCount());
+                Integer goal = totals.getRequiredCalories();
+                if (goal != null && goal > 0) {
+                    jsonResponse.put("requiredCalories", goal)
+                            .put("remainingCalories", goal - totals.getCalories())
+                            .put("progress", Math.round(totals.getCalories() * 1000.0 / goal) / 1000.0);
+                }
+                out.print(jsonResponse.toString());
+            } catch (NumberFormatException | DateTimeParseException e) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print(new JSONObject()
+                        .put("success", false)
+                        .put("message", "A numeric userId and an entryDate of YYYY-MM-DD are required.").toString());
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error reading daily totals", e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                out.print(new JSONObject()
+                        .put("success", false)
+                        .put("message", "Server error while reading daily totals.").toString());
+            }
+        }
+    }
+}
@@ -11,7 +11,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
 import java.sql.SQLException;
 
 import org.json.JSONObject;
@@ -23,12 +22,7 @@ public class EditMacroServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         super.init();
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            userDao = new userdao(conn);
-        } catch (SQLException e) {
-            throw new ServletException(e);
-        }
+        userDao = new userdao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -0,0 +1,202 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.FoodDao;
+import com.example.caloriecalculator.dao.userdao;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Full-history export of macro_entries and scanned_foods for one user.
+ *
+ * Rows are streamed from a server-side cursor straight into the response and flushed every
+ * FLUSH_EVERY rows, so memory use does not grow with the size of the history.
+ *
+ * Parameters: userId, format=ndjson|csv (default ndjson), dataset=macros|foods|all (default all).
+ * The caller must be that user, by token or login session ({@link AuthFilter#authenticatedUserId}).
+ */
+@WebServlet("/ExportHistory")
+public class ExportHistoryServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ExportHistoryServlet.class.getName());
+    private static final int FLUSH_EVERY = 500;
+    private static final String CSV_HEADER = "type,date,mealType,barcode,foodName,calories,carbs,protein,fat";
+
+    private userdao userDao;
+    private FoodDao foodDao;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        userDao = new userdao(MySQLConnection.getDataSource());
+        foodDao = new FoodDao(MySQLConnection.getDataSource());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        doPost(request, response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String userId = request.getParameter("userId");
+        String format = request.getParameter("format") != null ? request.getParameter("format") : "ndjson";
+        String dataset = request.getParameter("dataset") != null ? request.getParameter("dataset") : "all";
+        response.setCharacterEncoding("UTF-8");
+
+        int parsedUserId;
+        try {
+            parsedUserId = Integer.parseInt(userId);
+        } catch (NumberFormatException e) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "A numeric userId is required.");
+            return;
+        }
+        Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
+        if (authenticatedUserId == null) {
+            sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Sign in to export your history.");
+            return;
+        }
+        if (authenticatedUserId != parsedUserId) {
+            sendError(response, HttpServletResponse.SC_FORBIDDEN, "Cannot export another user's history.");
+            return;
+        }
+        boolean csv = "csv".equals(format);
+        if (!csv && !"ndjson".equals(format)) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "format must be ndjson or csv.");
+            return;
+        }
+        boolean macros = "all".equals(dataset) || "macros".equals(dataset);
+        boolean foods = "all".equals(dataset) || "foods".equals(dataset);
+        if (!macros && !foods) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "dataset must be macros, foods or all.");
+            return;
+        }
+
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"history-" + parsedUserId + (csv ? ".csv\"" : ".ndjson\""));
+
+        ChunkedWriter out = new ChunkedWriter(response);
+        try {
+            if (csv) {
+                out.row(CSV_HEADER);
+            }
+            if (macros) {
+                userDao.streamMacroHistory(parsedUserId, entry -> out.row(csv
+                        ? csvRow("macro", entry.getEntryDate(), entry.getMealType(), null, null,
+                                entry.getCalories(), entry.getCarbs(), entry.getProtein(), entry.getFat())
+                        : new JSONObject()
+                                .put("type", "macro")
+                                .put("date", entry.getEntryDate())
+                                .put("mealType", entry.getMealType())
+                                .put("calories", entry.getCalories())
+                                .put("carbs", entry.getCarbs())
+                                .put("protein", entry.getProtein())
+                                .put("fat", entry.getFat())
+                                .toString()));
+            }
+            if (foods) {
+                foodDao.streamScannedFoods(String.valueOf(parsedUserId), food -> {
+                    String scannedDate = food.getScannedDate() != null ? food.getScannedDate().toString() : null;
+                    out.row(csv
+                            ? csvRow("food", scannedDate, null, food.getBarcode(), food.getFoodName(),
+                                    food.getCalories(), food.getCarbs(), food.getProtein(), food.getFat())
+                            : new JSONObject()
+                                    .put("type", "food")
+                                    .put("date", scannedDate)
+                                    .put("barcode", food.getBarcode())
+                                    .put("foodName", food.getFoodName())
+                                    .put("calories", food.getCalories())
+                                    .put("carbs", food.getCarbs())
+                                    .put("protein", food.getProtein())
+                                    .put("fat", food.getFat())
+                                    .toString());
+                });
+            }
+            out.finish();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error exporting history for user " + parsedUserId, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setCharacterEncoding("UTF-8");
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error exporting history.");
+            }
+            // Otherwise headers are already out; the client sees a truncated body
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Export aborted for user " + parsedUserId, e);
+        }
+    }
+
+    private static String csvRow(String type, String date, String mealType, String barcode, String foodName,
+                                 int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat) {
+        return String.join(",", type, csvField(date), csvField(mealType), csvField(barcode), csvField(foodName),
+                String.valueOf(calories), csvField(carbs), csvField(protein), csvField(fat));
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value.toString();
+        if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+            return '"' + s.replace("\"", "\"\"") + '"';
+        }
+        return s;
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("success", false)
+                    .put("message", message).toString());
+        }
+    }
+
+    // Writes one line per row and pushes the buffered chunk to the client every FLUSH_EVERY rows
+    private static final class ChunkedWriter {
+        private final HttpServletResponse response;
+        private PrintWriter writer;
+        private int pending;
+
+        ChunkedWriter(HttpServletResponse response) {
+            this.response = response;
+        }
+
+        void row(String line) throws IOException {
+            if (writer == null) {
+                writer = response.getWriter();
+            }
+            writer.write(line);
+            writer.write('\n');
+            if (++pending >= FLUSH_EVERY) {
+                writer.flush();
+                pending = 0;
+                // PrintWriter swallows IOExceptions; stop reading the cursor once the client is gone
+                if (writer.checkError()) {
+                    throw new IOException("Client disconnected during export");
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (writer == null) {
+                writer = response.getWriter();
+            }
+            writer.flush();
+        }
+    }
+}
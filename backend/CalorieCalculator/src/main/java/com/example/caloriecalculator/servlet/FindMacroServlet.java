@@ -1,6 +1,8 @@
 package com.example.caloriecalculator.servlet;
 
 import com.example.caloriecalculator.dao.userdao;
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MacroTotals;
 import com.example.caloriecalculator.helper.MySQLConnection;
 import com.example.caloriecalculator.helper.user;
 import jakarta.servlet.ServletException;
@@ -13,24 +15,25 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
-import java.sql.ResultSet;
+import java.math.RoundingMode;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.logging.Logger;
 
 @WebServlet("/FindMacro")
 public class FindMacroServlet extends HttpServlet {
+    // Upper bound on a range request, about a year of days
+    private static final int MAX_RANGE_DAYS = 366;
+
     private userdao userDao;
     private static final Logger logger = Logger.getLogger(FindMacroServlet.class.getName());
 
     @Override
     public void init() throws ServletException {
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            userDao = new userdao(conn);
-        } catch (SQLException e) {
-            throw new ServletException("Unable to initialize userDao", e);
-        }
+        userDao = new userdao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -40,28 +43,34 @@ public class FindMacroServlet extends HttpServlet {
         String userId = request.getParameter("userId");
         String entryDate = request.getParameter("entryDate");
         //String mealType = request.getParameter("mealType");
+        String fromDate = request.getParameter("fromDate");
+        String toDate = request.getParameter("toDate");
 
         boolean isMobileRequest = "true".equals(request.getHeader("X-Mobile-App"));
         response.setCharacterEncoding("UTF-8");
 
-        if (isMobileRequest) {
+        if (isMobileRequest && fromDate != null && toDate != null) {
+            // Range variant: per-day totals from one aggregate query instead of one call per day
+            response.setContentType("application/json");
+            findMacroRange(request, response, userId, fromDate, toDate);
+        } else if (isMobileRequest) {
             // Handle mobile requests (JSON response)
             response.setContentType("application/json");
             try (PrintWriter out = response.getWriter()) {
                 // Call findMacro from userDao to fetch the data
-                ResultSet rs = userDao.findMacro(Integer.parseInt(userId), entryDate);
+                List<MacroEntry> entries = userDao.findMacro(Integer.parseInt(userId), entryDate);
 
-                // Convert ResultSet to JSON Array
+                // Convert entries to JSON Array
                 JSONArray jsonResponse = new JSONArray();
-                while (rs.next()) {
+                for (MacroEntry entry : entries) {
                     JSONObject macroData = new JSONObject();
-                    macroData.put("userId", rs.getInt("userId"));
-                    macroData.put("entryDate", rs.getString("entryDate"));
-                    macroData.put("mealType", rs.getString("mealType"));
-                    macroData.put("calories", rs.getInt("calories"));
-                    macroData.put("carbs", rs.getInt("carbs"));
-                    macroData.put("protein", rs.getInt("protein"));
-                    macroData.put("fat", rs.getInt("fat"));
+                    macroData.put("userId", entry.getUserId());
+                    macroData.put("entryDate", entry.getEntryDate());
+                    macroData.put("mealType", entry.getMealType());
+                    macroData.put("calories", entry.getCalories());
+                    macroData.put("carbs", entry.getCarbs().intValue());
+                    macroData.put("protein", entry.getProtein().intValue());
+                    macroData.put("fat", entry.getFat().intValue());
 
                     jsonResponse.put(macroData);
                 }
@@ -81,4 +90,58 @@ public class FindMacroServlet extends HttpServlet {
             response.getWriter().write("<html><body><h1>Non-mobile request, unable to display JSON.</h1></body></html>");
         }
     }
+
+    // fromDate/toDate are inclusive; groupBy=mealType splits each day by meal. Only for the signed-in user.
+    private void findMacroRange(HttpServletRequest request, HttpServletResponse response,
+                                String userId, String fromDate, String toDate) throws IOException {
+        boolean byMealType = "mealType".equals(request.getParameter("groupBy"));
+        PrintWriter out = response.getWriter();
+        try {
+            LocalDate from = LocalDate.parse(fromDate);
+            LocalDate to = LocalDate.parse(toDate);
+            if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                out.print(new JSONObject().put("error", "Date range must be 1 to " + MAX_RANGE_DAYS + " days").toString());
+                return;
+            }
+            Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
+            if (authenticatedUserId == null) {
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                out.print(new JSONObject().put("error", "Sign in to see your history").toString());
+                return;
+            }
+            if (authenticatedUserId != Integer.parseInt(userId)) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                out.print(new JSONObject().put("error", "Cannot read another user's history").toString());
+                return;
+            }
+
+            List<MacroTotals> totals = userDao.findMacroTotals(Integer.parseInt(userId), from.toString(), to.toString(), byMealType);
+
+            // Same integer fields as the single-day response, with sums rounded rather than truncated
+            JSONArray jsonResponse = new JSONArray();
+            for (MacroTotals day : totals) {
+                JSONObject dayData = new JSONObject();
+                dayData.put("userId", Integer.parseInt(userId));
+                dayData.put("entryDate", day.getEntryDate());
+                if (byMealType) {
+                    dayData.put("mealType", day.getMealType());
+                }
+                dayData.put("calories", day.getCalories());
+                dayData.put("carbs", day.getCarbs().setScale(0, RoundingMode.HALF_UP).intValue());
+                dayData.put("protein", day.getProtein().setScale(0, RoundingMode.HALF_UP).intValue());
+                dayData.put("fat", day.getFat().setScale(0, RoundingMode.HALF_UP).intValue());
+                dayData.put("entries", day.getEntryCount());
+                jsonResponse.put(dayData);
+            }
+            out.print(jsonResponse.toString());
+        } catch (DateTimeParseException | NumberFormatException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.print(new JSONObject().put("error", "Invalid userId or date").toString());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            out.print("{\"error\": \"Error retrieving data\"}");
+        }
+    }
 }
\ No newline at end of file
@@ -1,132 +1,348 @@
 package com.example.caloriecalculator.servlet;
 
+import com.example.caloriecalculator.dao.CachedImageResultDao;
+import com.example.caloriecalculator.dao.UploadQuota;
 import com.example.caloriecalculator.dao.imagedao;
+import com.example.caloriecalculator.helper.ImageResizer;
+import com.example.caloriecalculator.helper.ImageResult;
+import com.example.caloriecalculator.helper.ImageUpload;
+import com.example.caloriecalculator.helper.Metrics;
+import com.example.caloriecalculator.helper.ModelExecutor;
+import com.example.caloriecalculator.helper.ModelGateway;
 import com.example.caloriecalculator.helper.MySQLConnection;
-import com.example.caloriecalculator.helper.OpenAIHelper;
+import com.example.caloriecalculator.helper.SingleFlight;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.Part;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
-import java.sql.Connection;
-import java.sql.SQLException;
+import java.nio.file.Path;
 import org.json.JSONObject;
 import java.io.BufferedReader;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Base64;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-@WebServlet("/ImageQuery")
+/**
+ * Photo nutrition query. The request thread only dispatches; reading the image, the quota check,
+ * model call and image_queries write run on {@link ModelExecutor} under Servlet async processing,
+ * so slow model calls don't hold container threads needed by logins and macro logging.
+ *
+ * Upload modes, by Content-Type:
+ * - application/json (legacy): {"userId", "entryDate", "base64Image"}
+ * - application/octet-stream or image/*: the raw image bytes as the body, userId and entryDate
+ *   in the query string. Streamed through NIO into an off-heap {@link ImageUpload} buffer, with no
+ *   base64 text; the quota is checked before the body is read.
+ * - multipart/form-data: userId and entryDate fields plus an "image" file part, which the
+ *   container spools to disk and is then streamed into the buffer like a raw body
+ *
+ * Results are cached by the SHA-256 of the image bytes ({@link CachedImageResultDao}); a repeat of
+ * a known photo is answered without calling the model or storing another copy of the image, and
+ * concurrent copies of the same photo share one model call ({@link SingleFlight}). New
+ * photos are downscaled and re-encoded by {@link ImageResizer}, then kept in the content-addressed
+ * ImageStore; image_queries only references them by hash. The daily upload limit is checked
+ * against in-memory counters ({@link UploadQuota}) and depends on the user's memberType.
+ *
+ * Model calls go through {@link ModelGateway}. When it sheds load (queue full, circuit open) the
+ * request gets 429/503 with Retry-After, and no row is written and no quota is used. Admission is
+ * checked before an upload buffer is taken, and a full {@link ModelExecutor} queue is answered the
+ * same way. A query that has timed out before it reaches the model call (or the call it would
+ * share) is dropped; once that work has started it finishes for any copies waiting on it.
+ */
+@WebServlet(urlPatterns = "/ImageQuery", asyncSupported = true)
+@MultipartConfig(fileSizeThreshold = 0, maxFileSize = 16 * 1024 * 1024, maxRequestSize = 17 * 1024 * 1024)
 public class ImageQueryServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ImageQueryServlet.class.getName());
+    private static final long ASYNC_TIMEOUT_MILLIS = Long.getLong("macrotracker.imageQuery.timeoutMillis", 120_000L);
+    private static final SingleFlight<String, ImageResult> IN_FLIGHT = new SingleFlight<>("imageQuery");
+
     private imagedao imageDao;
+    private CachedImageResultDao imageResults;
+    private UploadQuota uploadQuota;
 
     @Override
     public void init() throws ServletException {
         super.init();
-        try {
-            Connection connection = MySQLConnection.getConnection();
-            imageDao = new imagedao(connection);
-        } catch (SQLException e) {
-            throw new ServletException("Unable to initialize imageDao", e);
-        }
+        imageDao = new imagedao(MySQLConnection.getDataSource());
+        imageResults = new CachedImageResultDao(MySQLConnection.getDataSource());
+        uploadQuota = new UploadQuota(MySQLConnection.getDataSource());
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
 
-        try {
-            // Parse JSON input from request
-            StringBuilder sb = new StringBuilder();
-            BufferedReader reader = request.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+        // Set once a response is sent, by the worker or the timeout; the worker stops when the timeout got there first
+        AtomicBoolean responded = new AtomicBoolean();
+        String contentType = request.getContentType() != null ? request.getContentType().toLowerCase() : "";
+        Task task;
+        if (contentType.startsWith("application/octet-stream") || contentType.startsWith("image/")) {
+            int userId;
+            String entryDate = request.getParameter("entryDate");
+            try {
+                userId = Integer.parseInt(request.getParameter("userId"));
+                LocalDate.parse(entryDate);
+            } catch (NumberFormatException | DateTimeParseException | NullPointerException e) {
+                sendError(response, HttpServletResponse.SC_BAD_REQUEST, "userId and entryDate (YYYY-MM-DD) query parameters are required.");
+                return;
             }
-            JSONObject inputJson = new JSONObject(sb.toString());
-
-            int userId = inputJson.getInt("userId");
-            String entryDate = inputJson.getString("entryDate");
-            String base64Image = inputJson.getString("base64Image");
-            byte[] imageBytes = Base64.getDecoder().decode(base64Image);
-            Path tempImagePath = Files.createTempFile("upload_", ".jpg");
-            Files.write(tempImagePath, imageBytes);
-
-            // Step 1: Check upload allowance
-            int count = imageDao.getUploadCountForDate(userId, entryDate);
-            if (count >= 4) {
-                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                JSONObject errorJson = new JSONObject();
-                errorJson.put("error", "Daily upload limit reached.");
-                out.print(errorJson.toString());
-                Files.deleteIfExists(tempImagePath); // Delete temp file
+            task = () -> query(userId, entryDate, () -> ImageUpload.read(request.getInputStream()), responded);
+        } else if (contentType.startsWith("multipart/form-data")) {
+            task = () -> {
+                int userId;
+                String entryDate = request.getParameter("entryDate");
+                Part image = request.getPart("image");
+                try {
+                    userId = Integer.parseInt(request.getParameter("userId"));
+                    LocalDate.parse(entryDate);
+                } catch (NumberFormatException | DateTimeParseException | NullPointerException e) {
+                    throw new ImageUpload.Rejected(HttpServletResponse.SC_BAD_REQUEST, "userId and entryDate (YYYY-MM-DD) fields are required.");
+                }
+                if (image == null) {
+                    throw new ImageUpload.Rejected(HttpServletResponse.SC_BAD_REQUEST, "An image part is required.");
+                }
+                return query(userId, entryDate, () -> {
+                    try (InputStream in = image.getInputStream()) {
+                        return ImageUpload.read(in);
+                    }
+                }, responded);
+            };
+        } else {
+            int userId;
+            String entryDate;
+            String base64Image;
+            try {
+                // Parse JSON input from request
+                StringBuilder sb = new StringBuilder();
+                BufferedReader reader = request.getReader();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    sb.append(line);
+                }
+                JSONObject inputJson = new JSONObject(sb.toString());
+
+                userId = inputJson.getInt("userId");
+                entryDate = inputJson.getString("entryDate");
+                LocalDate.parse(entryDate);
+                base64Image = inputJson.getString("base64Image");
+            } catch (Exception e) {
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "An error occurred: " + e.getMessage());
                 return;
             }
+            task = () -> query(userId, entryDate, () -> ImageUpload.wrap(Base64.getDecoder().decode(base64Image)), responded);
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ASYNC_TIMEOUT_MILLIS);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                // The worker sees responded and drops the query if it hasn't reached the model call yet
+                JSONObject errorJson = new JSONObject();
+                errorJson.put("error", "The image query timed out.");
+                respond(asyncContext, responded, HttpServletResponse.SC_GATEWAY_TIMEOUT, 0, errorJson);
+            }
 
-            String prompt = "You are a calorie and nutrition recognition model. Analyze this image and provide the estimated calories, protein, carbs, and fat content in a JSON format.";
-            String gptResponse;
+            @Override
+            public void onError(AsyncEvent event) {
+                responded.set(true);
+                LOGGER.log(Level.FINE, "Image query connection failed", event.getThrowable());
+            }
 
-            try {
-                gptResponse = OpenAIHelper.callModelWithImage(tempImagePath.toString(), prompt);
-                System.out.println("GPT raw response: " + gptResponse);
-
-                // Parse the model response as JSON
-                JSONObject modelJson = new JSONObject(gptResponse);
-                String predictedLabel = modelJson.getString("label");
-                int predictedCalories = modelJson.getInt("calories");
-                int protein = modelJson.getInt("protein");
-                int carbs = modelJson.getInt("carbs");
-                int fat = modelJson.getInt("fat");
-
-                // Step 3: Save final result to DB (only one write)
-                imageDao.saveImage(userId, entryDate, base64Image, gptResponse);
-
-                // Step 4: Return result to client
-                JSONObject result = new JSONObject();
-                result.put("label", predictedLabel);
-                result.put("calories", predictedCalories);
-                result.put("protein", protein);
-                result.put("carbs", carbs);
-                result.put("fat", fat);
-                out.print(result.toString());
-
-            } catch (Exception modelError) {
-                String predictedLabel = "error";
-                int predictedCalories = -1;
-                int protein = 0;
-                int carbs = 0;
-                int fat = 0;
-                gptResponse = modelError.getMessage(); // Store error message
-                modelError.printStackTrace();
-                System.out.println("GPT error response: " + gptResponse);
-
-                // Save error response to DB
-                imageDao.saveImage(userId, entryDate, base64Image, gptResponse);
-
-                // Return error response to client
-                JSONObject result = new JSONObject();
-                result.put("label", predictedLabel);
-                result.put("calories", predictedCalories);
-                result.put("protein", protein);
-                result.put("carbs", carbs);
-                result.put("fat", fat);
-                out.print(result.toString());
-            } finally {
-                // Delete the temporary file
-                Files.deleteIfExists(tempImagePath);
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
             }
+        });
 
-        } catch (Exception e) {
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        try {
+            ModelExecutor.get().execute(Metrics.propagate(() -> {
+                int status = HttpServletResponse.SC_OK;
+                long retryAfterSeconds = 0;
+                JSONObject result;
+                try {
+                    result = task.run();
+                } catch (ImageUpload.Rejected e) {
+                    status = e.getStatus();
+                    retryAfterSeconds = e.getRetryAfterSeconds();
+                    result = new JSONObject();
+                    result.put("error", e.getMessage());
+                } catch (Exception e) {
+                    status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                    result = new JSONObject();
+                    result.put("error", "An error occurred: " + e.getMessage());
+                }
+                respond(asyncContext, responded, status, retryAfterSeconds, result);
+            }));
+        } catch (RejectedExecutionException e) {
             JSONObject errorJson = new JSONObject();
-            errorJson.put("error", "An error occurred: " + e.getMessage());
-            out.print(errorJson.toString());
+            if (ModelExecutor.isShutdown()) {
+                errorJson.put("error", "Server is shutting down.");
+                respond(asyncContext, responded, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 0, errorJson);
+            } else {
+                errorJson.put("error", "Too many image queries in progress.");
+                respond(asyncContext, responded, 429, ModelGateway.getRetryAfterSeconds(), errorJson);
+            }
+        }
+    }
+
+    // Runs on the model executor: quota check, reading the image, model call and the single image_queries write
+    private JSONObject query(int userId, String entryDate, UploadSource source, AtomicBoolean responded) throws Exception {
+        // Waited out the timeout in the executor queue; nobody is listening for the answer
+        if (responded.get()) {
+            return null;
+        }
+        // Refuse before taking quota or an upload buffer if the model is shedding load
+        ModelGateway.checkAvailable();
+
+        // Step 1: Take an upload from the daily allowance before reading the image (in memory, no query)
+        if (!uploadQuota.tryAcquire(userId, entryDate)) {
+            throw new ImageUpload.Rejected(HttpServletResponse.SC_FORBIDDEN, "Daily upload limit reached.");
         }
+
+        // Only uploads that end up in image_queries count; anything else hands the upload back
+        AtomicBoolean recorded = new AtomicBoolean();
+        try (ImageUpload image = source.open()) {
+            String contentHash = image.sha256();
+            ImageResult cached = null;
+            try {
+                cached = imageResults.find(contentHash);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Image result cache lookup failed", e);
+            }
+            if (cached != null) {
+                return toJson(cached).put("cached", true);
+            }
+
+            // Reading the upload can take long enough for the client to have given up. Checked here, not
+            // in the shared work, so a copy of the photo still waiting isn't failed along with it.
+            if (responded.get()) {
+                return null;
+            }
+
+            // The app resends a photo when the network drops; copies arriving while the first is still
+            // with the model wait for its answer instead of making their own call and image_queries row
+            ImageResult result = IN_FLIGHT.run(contentHash,
+                    () -> recognize(userId, entryDate, image, contentHash, recorded), ASYNC_TIMEOUT_MILLIS);
+            return toJson(result != null ? result : new ImageResult("error", -1, 0, 0, 0));
+        } finally {
+            if (!recorded.get()) {
+                uploadQuota.release(userId, entryDate);
+            }
+        }
+    }
+
+    // Resize, store, model call, the image_queries write and the result cache entry; null if the model failed.
+    // Shared with concurrent copies of the photo, so it doesn't look at this request's client.
+    private ImageResult recognize(int userId, String entryDate, ImageUpload image, String contentHash,
+                                  AtomicBoolean recorded) throws Exception {
+        // Shrink before anything is stored or sent upstream; the result cache stays keyed by the
+        // hash of the photo as uploaded, the store by the hash of the shrunk copy
+        ImageResizer.process(image);
+
+        // Written once per distinct photo; the stored file is what the model is given, so the upload
+        // buffer goes back to the pool now instead of being held through the model call
+        Path storedImage = imageDao.storeImage(image);
+        String storedHash = image.sha256();
+        int storedSize = image.size();
+        String storedMimeType = image.getMimeType();
+        image.close();
+
+        String prompt = "You are a calorie and nutrition recognition model. Analyze this image and provide the estimated calories, protein, carbs, and fat content in a JSON format.";
+        String gptResponse;
+        ImageResult result;
+
+        try {
+            gptResponse = ModelGateway.callModelWithImage(storedImage.toString(), prompt);
+            LOGGER.fine("GPT raw response: " + gptResponse);
+
+            // Parse the model response as JSON
+            JSONObject modelJson = new JSONObject(gptResponse);
+            result = new ImageResult(modelJson.getString("label"), modelJson.getInt("calories"),
+                    modelJson.getInt("protein"), modelJson.getInt("carbs"), modelJson.getInt("fat"));
+        } catch (ImageUpload.Rejected e) {
+            // Shed by the gateway: the model was never called, so no error row and no quota used
+            throw e;
+        } catch (Exception modelError) {
+            gptResponse = modelError.getMessage(); // Store error message
+            LOGGER.log(Level.WARNING, "GPT error response: " + gptResponse, modelError);
+            result = null;
+        }
+
+        // Save final result (or the model error) to DB, only one write
+        imageDao.saveStoredImage(userId, entryDate, storedHash, storedSize, storedMimeType, gptResponse);
+        recorded.set(true);
+        if (result != null) {
+            try {
+                imageResults.save(contentHash, result);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not cache image result", e);
+            }
+        }
+        return result;
+    }
+
+    private static JSONObject toJson(ImageResult result) {
+        JSONObject json = new JSONObject();
+        json.put("label", result.getLabel());
+        json.put("calories", result.getCalories());
+        json.put("protein", result.getProtein());
+        json.put("carbs", result.getCarbs());
+        json.put("fat", result.getFat());
+        return json;
+    }
+
+    // Writes the response once, whether it comes from the worker or the timeout
+    private static void respond(AsyncContext asyncContext, AtomicBoolean responded, int status, long retryAfterSeconds, JSONObject body) {
+        if (!responded.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            response.setStatus(status);
+            if (retryAfterSeconds > 0) {
+                response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            }
+            PrintWriter out = response.getWriter();
+            out.print(body.toString());
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.log(Level.FINE, "Could not write image query response", e);
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        JSONObject errorJson = new JSONObject();
+        errorJson.put("error", message);
+        response.getWriter().print(errorJson.toString());
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        JSONObject run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface UploadSource {
+        ImageUpload open() throws IOException;
     }
 }
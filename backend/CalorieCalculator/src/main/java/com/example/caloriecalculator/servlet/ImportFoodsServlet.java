@@ -0,0 +1,245 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.CachedFoodDao;
+import com.example.caloriecalculator.dao.FoodDao;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import com.example.caloriecalculator.helper.ScannedFood;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bulk barcode import. The request body is read line by line and written through batched upserts
+ * of BATCH_SIZE rows, so thousands of products can be loaded in one request without buffering them.
+ *
+ * Query parameters: target=catalog to seed the shared food_catalog, or userId=... to import into that
+ * user's own foods; format=ndjson|csv (default ndjson). Both formats match /ExportHistory output:
+ * NDJSON objects with barcode, foodName, calories, carbs, protein, fat (lines of another "type" are
+ * skipped), or CSV with a header row naming those columns.
+ *
+ * Seeding the catalog changes what every user's barcode lookups return, so it needs the admin
+ * token (see {@link AuthFilter#isAdmin}). A userId import needs that user's token or login session.
+ */
+@WebServlet("/ImportFoods")
+public class ImportFoodsServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ImportFoodsServlet.class.getName());
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private FoodDao foodDao;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        foodDao = new CachedFoodDao(MySQLConnection.getDataSource());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        String userId = request.getParameter("userId");
+        boolean catalog = "catalog".equals(request.getParameter("target"));
+        String format = request.getParameter("format") != null ? request.getParameter("format") : "ndjson";
+        boolean csv = "csv".equals(format);
+
+        if (catalog == (userId != null && !userId.isEmpty())) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Pass either target=catalog or a userId.");
+            return;
+        }
+        if (!csv && !"ndjson".equals(format)) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "format must be ndjson or csv.");
+            return;
+        }
+        if (catalog) {
+            if (!AuthFilter.isAdmin(request)) {
+                sendError(response, HttpServletResponse.SC_FORBIDDEN, "Importing into the catalog needs the admin token.");
+                return;
+            }
+        } else {
+            Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
+            if (authenticatedUserId == null) {
+                sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Sign in to import foods.");
+                return;
+            }
+            if (!String.valueOf(authenticatedUserId).equals(userId)) {
+                sendError(response, HttpServletResponse.SC_FORBIDDEN, "Cannot import into another user's foods.");
+                return;
+            }
+        }
+
+        List<ScannedFood> batch = new ArrayList<>(BATCH_SIZE);
+        JSONArray errors = new JSONArray();
+        int imported = 0;
+        int rejected = 0;
+        int skipped = 0;
+        int lineNumber = 0;
+        Map<String, Integer> columns = null;
+
+        try {
+            BufferedReader reader = request.getReader();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                ScannedFood food;
+                try {
+                    if (csv) {
+                        List<String> fields = parseCsvLine(line);
+                        if (columns == null) {
+                            columns = new HashMap<>();
+                            for (int i = 0; i < fields.size(); i++) {
+                                columns.put(fields.get(i).trim(), i);
+                            }
+                            continue;
+                        }
+                        String type = field(fields, columns, "type");
+                        if (type != null && !type.isEmpty() && !"food".equals(type)) {
+                            skipped++;
+                            continue;
+                        }
+                        food = toFood(field(fields, columns, "barcode"), field(fields, columns, "foodName"),
+                                field(fields, columns, "calories"), field(fields, columns, "carbs"),
+                                field(fields, columns, "protein"), field(fields, columns, "fat"));
+                    } else {
+                        JSONObject json = new JSONObject(line);
+                        if (json.has("type") && !"food".equals(json.getString("type"))) {
+                            skipped++;
+                            continue;
+                        }
+                        food = toFood(json.optString("barcode", null), json.optString("foodName", null),
+                                String.valueOf(json.opt("calories")), String.valueOf(json.opt("carbs")),
+                                String.valueOf(json.opt("protein")), String.valueOf(json.opt("fat")));
+                    }
+                } catch (JSONException | IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.length() < MAX_REPORTED_ERRORS) {
+                        errors.put(new JSONObject()
+                                .put("line", lineNumber)
+                                .put("message", e.getMessage()));
+                    }
+                    continue;
+                }
+
+                batch.add(food);
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, catalog, userId);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, catalog, userId);
+                imported += batch.size();
+            }
+        } catch (SQLException e) {
+            // Earlier batches are already committed; report how far the import got
+            LOGGER.log(Level.SEVERE, "Error importing foods near line " + lineNumber, e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            try (PrintWriter out = response.getWriter()) {
+                out.print(new JSONObject()
+                        .put("success", false)
+                        .put("message", "Database error while importing foods.")
+                        .put("imported", imported)
+                        .put("line", lineNumber).toString());
+            }
+            return;
+        }
+
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("success", rejected == 0)
+                    .put("imported", imported)
+                    .put("rejected", rejected)
+                    .put("skipped", skipped)
+                    .put("errors", errors).toString());
+        }
+    }
+
+    private void flush(List<ScannedFood> batch, boolean catalog, String userId) throws SQLException {
+        if (catalog) {
+            foodDao.upsertCatalogFoods(batch, "import");
+        } else {
+            foodDao.upsertScannedFoods(userId, batch);
+        }
+    }
+
+    private static ScannedFood toFood(String barcode, String foodName, String calories,
+                                      String carbs, String protein, String fat) {
+        if (barcode == null || barcode.isEmpty() || barcode.length() > 32) {
+            throw new IllegalArgumentException("barcode is missing or longer than 32 characters");
+        }
+        if (foodName == null || foodName.isEmpty() || foodName.length() > 255) {
+            throw new IllegalArgumentException("foodName is missing or longer than 255 characters");
+        }
+        // NumberFormatException is an IllegalArgumentException and is reported per line
+        return new ScannedFood(0, null, barcode, foodName, Integer.parseInt(calories),
+                new BigDecimal(carbs), new BigDecimal(protein), new BigDecimal(fat), null);
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index != null && index < fields.size() ? fields.get(index) : null;
+    }
+
+    // Splits one CSV line, honouring double-quoted fields with "" escapes
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("success", false)
+                    .put("message", message).toString());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.CachedUserDao;
+import com.example.caloriecalculator.dao.userdao;
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs several macro entries in one request, e.g. a whole day or an offline queue syncing.
+ *
+ * Body: {"userId": 1, "entries": [{"entryDate": "2025-06-30", "mealType": "lunch", "calories": 500,
+ * "carbs": 60, "protein": 30, "fat": 15}, ...]}. Invalid entries are reported individually and skipped;
+ * the valid ones are written in one transaction together with a single streak update. The caller
+ * must be that user, by token or login session ({@link AuthFilter#authenticatedUserId}).
+ */
+@WebServlet("/LogMacroBatch")
+public class LogMacroBatchServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(LogMacroBatchServlet.class.getName());
+    private static final int MAX_ENTRIES = 500;
+
+    private userdao userDao;
+
+    @Override
+    public void init() throws ServletException {
+        userDao = new CachedUserDao(MySQLConnection.getDataSource());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        int userId;
+        JSONArray entriesJson;
+        try {
+            StringBuilder sb = new StringBuilder();
+            BufferedReader reader = request.getReader();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line);
+            }
+            JSONObject inputJson = new JSONObject(sb.toString());
+            userId = inputJson.getInt("userId");
+            entriesJson = inputJson.getJSONArray("entries");
+        } catch (JSONException e) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "A JSON body with userId and an entries array is required.");
+            return;
+        }
+        Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
+        if (authenticatedUserId == null) {
+            sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Sign in to log macros.");
+            return;
+        }
+        if (authenticatedUserId != userId) {
+            sendError(response, HttpServletResponse.SC_FORBIDDEN, "Cannot log macros for another user.");
+            return;
+        }
+        if (entriesJson.isEmpty() || entriesJson.length() > MAX_ENTRIES) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "entries must contain between 1 and " + MAX_ENTRIES + " items.");
+            return;
+        }
+
+        // Validate each entry up front so one bad item doesn't fail the whole batch
+        JSONObject[] results = new JSONObject[entriesJson.length()];
+        List<MacroEntry> entries = new ArrayList<>();
+        List<Integer> entryIndexes = new ArrayList<>();
+        for (int i = 0; i < entriesJson.length(); i++) {
+            try {
+                JSONObject item = entriesJson.getJSONObject(i);
+                MacroEntry entry = new MacroEntry();
+                entry.setUserId(userId);
+                entry.setEntryDate(LocalDate.parse(item.getString("entryDate")).toString());
+                entry.setMealType(item.getString("mealType"));
+                entry.setCalories(item.getInt("calories"));
+                entry.setCarbs(new BigDecimal(item.get("carbs").toString()));
+                entry.setProtein(new BigDecimal(item.get("protein").toString()));
+                entry.setFat(new BigDecimal(item.get("fat").toString()));
+                if (entry.getMealType().isEmpty()) {
+                    throw new IllegalArgumentException("mealType is empty");
+                }
+                entries.add(entry);
+                entryIndexes.add(i);
+            } catch (JSONException | DateTimeParseException | IllegalArgumentException e) {
+                results[i] = new JSONObject()
+                        .put("index", i)
+                        .put("success", false)
+                        .put("message", "Invalid entry: " + e.getMessage());
+            }
+        }
+
+        int streak = -1;
+        if (!entries.isEmpty()) {
+            try {
+                streak = userDao.logMacros(userId, entries);
+            } catch (SQLException e) {
+                LOGGER.log(Level.SEVERE, "Error logging macro batch for user " + userId, e);
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error while logging macros");
+                return;
+            }
+            if (streak < 0) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "User not found.");
+                return;
+            }
+            for (int i : entryIndexes) {
+                results[i] = new JSONObject()
+                        .put("index", i)
+                        .put("success", true);
+            }
+        }
+
+        JSONObject jsonResponse = new JSONObject()
+                .put("success", entries.size() == results.length)
+                .put("logged", entries.size())
+                .put("failed", results.length - entries.size())
+                .put("results", new JSONArray(results));
+        if (streak >= 0) {
+            jsonResponse.put("streak", streak);
+        }
+        try (PrintWriter out = response.getWriter()) {
+            out.print(jsonResponse.toString());
+        }
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("success", false)
+                    .put("message", message).toString());
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.example.caloriecalculator.servlet;
 
 import com.example.caloriecalculator.helper.MySQLConnection;
-import com.example.caloriecalculator.helper.user;
+import com.example.caloriecalculator.dao.CachedUserDao;
+import com.example.caloriecalculator.dao.MacroWriteBehind;
 import com.example.caloriecalculator.dao.userdao;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -14,22 +15,19 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
-import java.sql.Connection;
 import java.sql.SQLException;
-import java.time.LocalDate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 @WebServlet("/LogMacro")
 public class LogMacroServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(LogMacroServlet.class.getName());
+
     private userdao userDao;
 
     @Override
     public void init() throws ServletException {
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            userDao = new userdao(conn);
-        } catch (SQLException e) {
-            throw new ServletException("Unable to initialize userDao", e);
-        }
+        userDao = new CachedUserDao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -50,32 +48,26 @@ public class LogMacroServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
 
         try {
-            user userData = userDao.getUserById(Integer.parseInt(userId));
-            LocalDate lastLoggedDate = LocalDate.parse(userData.getLastLoggedDate());
-
-            Integer currentStreak = userData.getStreak();
-            if (currentStreak == null) {
-                currentStreak = 0; // Default to 0 if the streak is null
-            }
-
-            // Streak update logic
-            int updatedStreak = currentStreak;
-            if (lastLoggedDate != null) {
-                if (LocalDate.parse(entryDate).isEqual(lastLoggedDate)) {
-                } else if (LocalDate.parse(entryDate).minusDays(1).isEqual(lastLoggedDate)) {
-                    updatedStreak = currentStreak + 1;
-                } else {
-                    updatedStreak = 1;
+            // With write-behind on, the entry is acknowledged once it is in the local log;
+            // otherwise the entry and the streak are written in one transaction
+            boolean logSuccess = MacroWriteBehind.isEnabled()
+                    && logBehind(Integer.parseInt(userId), entryDate, mealType, calories, carbs, protein, fat);
+            if (!logSuccess && MacroWriteBehind.isEnabled() && !MacroWriteBehind.awaitApplied(Integer.parseInt(userId))) {
+                // This user's earlier entries are still queued; written now, this one would land first and break the streak
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", "1");
+                response.setContentType("application/json");
+                try (PrintWriter out = response.getWriter()) {
+                    JSONObject jsonResponse = new JSONObject();
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "Macro logging is busy, please try again");
+                    jsonResponse.put("debug", debugInfo.toString());
+                    out.print(jsonResponse.toString());
                 }
-            } else {
-                updatedStreak = 1;
+                return;
             }
-
-            // Log the macro entry
-            boolean logSuccess = userDao.logMacro(Integer.parseInt(userId), entryDate, mealType, calories, carbs, protein, fat);
-
-            if (logSuccess) {
-                userDao.updateUserStreak(Integer.parseInt(userId), updatedStreak, entryDate);
+            if (!logSuccess) {
+                logSuccess = userDao.logMacro(Integer.parseInt(userId), entryDate, mealType, calories, carbs, protein, fat);
             }
 
             // Send JSON response with debug info
@@ -88,6 +80,18 @@ public class LogMacroServlet extends HttpServlet {
                 out.print(jsonResponse.toString());
             }
 
+        } catch (MacroWriteBehind.NotDurable e) {
+            // Already in the write-behind log and may be applied on restart; writing it directly could log it twice
+            LOGGER.log(Level.SEVERE, "Write-behind log failed with entry " + e.getSequence() + " written but not synced", e);
+
+            response.setContentType("application/json");
+            try (PrintWriter out = response.getWriter()) {
+                JSONObject jsonResponse = new JSONObject();
+                jsonResponse.put("success", false);
+                jsonResponse.put("message", "Could not confirm the macro was saved");
+                jsonResponse.put("debug", debugInfo.toString());
+                out.print(jsonResponse.toString());
+            }
         } catch (SQLException e) {
             e.printStackTrace(); // Print the full stack trace for debugging
 
@@ -101,4 +105,20 @@ public class LogMacroServlet extends HttpServlet {
             }
         }
     }
+
+    // False when the write-behind log can't take the entry and it has to be written directly.
+    // NotDurable is passed on: that entry is already in the log and must not be written again.
+    private static boolean logBehind(int userId, String entryDate, String mealType, int calories, BigDecimal carbs, BigDecimal protein, BigDecimal fat)
+            throws MacroWriteBehind.NotDurable {
+        try {
+            MacroWriteBehind writeBehind = MacroWriteBehind.get();
+            return writeBehind != null // shut down for undeploy
+                    && writeBehind.log(userId, entryDate, mealType, calories, carbs, protein, fat);
+        } catch (MacroWriteBehind.NotDurable e) {
+            throw e;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Write-behind log unavailable; writing the entry directly", e);
+            return false;
+        }
+    }
 }
\ No newline at end of file
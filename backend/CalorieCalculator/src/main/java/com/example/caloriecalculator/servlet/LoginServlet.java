@@ -1,7 +1,9 @@
 package com.example.caloriecalculator.servlet;
 
+import com.example.caloriecalculator.helper.AccessTokens;
 import com.example.caloriecalculator.helper.MySQLConnection;
 import com.example.caloriecalculator.helper.user;
+import com.example.caloriecalculator.dao.CachedUserDao;
 import com.example.caloriecalculator.dao.userdao;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -11,7 +13,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
 import java.sql.SQLException;
 import org.json.JSONObject;
 
@@ -22,12 +23,7 @@ public class LoginServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         super.init();
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            userDao = new userdao(conn);
-        } catch (SQLException e) {
-            throw new ServletException("Unable to initialize userDao", e);
-        }
+        userDao = new CachedUserDao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -51,27 +47,9 @@ public class LoginServlet extends HttpServlet {
                     session.setAttribute("currentUser", currentUser);
                     session.setAttribute("userId", currentUser.getUser_id());
                     session.setAttribute("username", currentUser.getUsername());  // Store username
-                    session.setAttribute("password", password);  // Store password
 
-                    JSONObject jsonResponse = new JSONObject();
-                    jsonResponse.put("success", true);
-                    jsonResponse.put("userId", currentUser.getUser_id());
-                    jsonResponse.put("username", currentUser.getUsername());
-                    jsonResponse.put("password", currentUser.getPassword());
-                    jsonResponse.put("displayName", currentUser.getDisplayName());
-                    jsonResponse.put("email", currentUser.getEmail());
-                    jsonResponse.put("age", currentUser.getAge());
-                    jsonResponse.put("currentWeight", currentUser.getCurrentWeight());
-                    jsonResponse.put("targetWeight", currentUser.getTargetWeight());
-                    jsonResponse.put("requiredCalories", currentUser.getRequiredCalories());
-                    jsonResponse.put("height", currentUser.getHeight());
-                    jsonResponse.put("activityLevel", currentUser.getActivityLevel());
-                    jsonResponse.put("gender", currentUser.getGender());
-                    jsonResponse.put("goalType", currentUser.getGoalType());
-                    jsonResponse.put("profilePicture", currentUser.getProfilePicture());
-                    jsonResponse.put("memberType", currentUser.getMemberType());
-                    jsonResponse.put("streak", currentUser.getStreak());
-                    jsonResponse.put("last_logged_date", currentUser.getLastLoggedDate());
+                    JSONObject jsonResponse = profileJson(currentUser);
+                    jsonResponse.put("token", AccessTokens.issue(currentUser.getUser_id()));
                     out.print(jsonResponse.toString());
                 } else {
                     JSONObject jsonResponse = new JSONObject();
@@ -91,7 +69,6 @@ public class LoginServlet extends HttpServlet {
                     session.setAttribute("currentUser", currentUser);
                     session.setAttribute("userId", currentUser.getUser_id());
                     session.setAttribute("username", currentUser.getUsername());  // Store username
-                    session.setAttribute("password", password);  // Store password
                     response.sendRedirect(request.getContextPath() + "/dashboard.jsp");
                 } else {
                     // Redirect only for web requests
@@ -103,6 +80,30 @@ public class LoginServlet extends HttpServlet {
         }
     }
 
+    // The profile fields the mobile app decodes into its UserResponse
+    static JSONObject profileJson(user currentUser) {
+        JSONObject jsonResponse = new JSONObject();
+        jsonResponse.put("success", true);
+        jsonResponse.put("userId", currentUser.getUser_id());
+        jsonResponse.put("username", currentUser.getUsername());
+        jsonResponse.put("password", currentUser.getPassword());
+        jsonResponse.put("displayName", currentUser.getDisplayName());
+        jsonResponse.put("email", currentUser.getEmail());
+        jsonResponse.put("age", currentUser.getAge());
+        jsonResponse.put("currentWeight", currentUser.getCurrentWeight());
+        jsonResponse.put("targetWeight", currentUser.getTargetWeight());
+        jsonResponse.put("requiredCalories", currentUser.getRequiredCalories());
+        jsonResponse.put("height", currentUser.getHeight());
+        jsonResponse.put("activityLevel", currentUser.getActivityLevel());
+        jsonResponse.put("gender", currentUser.getGender());
+        jsonResponse.put("goalType", currentUser.getGoalType());
+        jsonResponse.put("profilePicture", currentUser.getProfilePicture());
+        jsonResponse.put("memberType", currentUser.getMemberType());
+        jsonResponse.put("streak", currentUser.getStreak());
+        jsonResponse.put("last_logged_date", currentUser.getLastLoggedDate());
+        return jsonResponse;
+    }
+
     @Override
     public void destroy() {
         super.destroy();
@@ -0,0 +1,78 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.helper.Metrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.MappingMatch;
+
+import java.io.IOException;
+
+/**
+ * Times every request for {@link Metrics}, labelled with the servlet mapping it hit. Runs ahead of
+ * AuthFilter (see web.xml) so requests it turns away are counted too. Async requests such as
+ * /ImageQuery are recorded when they complete, not when the container thread returns.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        Metrics.Request timing = Metrics.begin(endpoint(request));
+        boolean async = false;
+        try {
+            chain.doFilter(req, res);
+            if (request.isAsyncStarted()) {
+                async = true;
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        Metrics.finish(timing, response.getStatus());
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+            throw e;
+        } finally {
+            Metrics.detach();
+            if (!async) {
+                Metrics.finish(timing, response.getStatus());
+            }
+        }
+    }
+
+    // The mapping pattern, such as "/login"; anything only the default servlet serves is "other"
+    private static String endpoint(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        if (mapping == null || mapping.getMappingMatch() == null || mapping.getMappingMatch() == MappingMatch.DEFAULT) {
+            return "other";
+        }
+        return mapping.getPattern();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.helper.Metrics;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Request counts and latency histograms per endpoint, with database, BCrypt and model-call
+ * phases, in the Prometheus text format. See {@link Metrics}.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("text/plain; version=0.0.4");
+
+        try (PrintWriter out = response.getWriter()) {
+            Metrics.write(out);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.caloriecalculator.servlet;
 
+import com.example.caloriecalculator.dao.CachedFoodDao;
 import com.example.caloriecalculator.dao.FoodDao;
 import com.example.caloriecalculator.helper.MySQLConnection;
 import com.example.caloriecalculator.helper.ScannedFood;
@@ -13,7 +14,6 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
-import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,13 +26,7 @@ public class ScanFoodServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         super.init();
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            foodDao = new FoodDao(conn);
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Unable to initialize FoodDao", e);
-            throw new ServletException("Unable to initialize FoodDao", e);
-        }
+        foodDao = new CachedFoodDao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -61,10 +55,21 @@ public class ScanFoodServlet extends HttpServlet {
                 return;
             }
 
+            String foodName = request.getParameter("foodName");
+            String caloriesParam = request.getParameter("calories");
+            String carbsParam = request.getParameter("carbs");
+            String proteinParam = request.getParameter("protein");
+            String fatParam = request.getParameter("fat");
+            boolean hasDetails = foodName != null && caloriesParam != null && carbsParam != null &&
+                    proteinParam != null && fatParam != null &&
+                    !foodName.isEmpty() && !caloriesParam.isEmpty() &&
+                    !carbsParam.isEmpty() && !proteinParam.isEmpty() && !fatParam.isEmpty();
+
             try {
                 ScannedFood existingFood = foodDao.getScannedFood(userId, barcode);
 
-                if (existingFood != null) {
+                // A shared catalog entry is returned unless the user sent their own details to override it
+                if (existingFood != null && !(existingFood.isShared() && hasDetails)) {
                     // If barcode exists, return food details
                     if (isMobileRequest) {
                         JSONObject jsonResponse = new JSONObject()
@@ -75,23 +80,15 @@ public class ScanFoodServlet extends HttpServlet {
                                 .put("carbs", existingFood.getCarbs())
                                 .put("protein", existingFood.getProtein())
                                 .put("fat", existingFood.getFat())
-                                .put("scannedDate", existingFood.getScannedDate().toString());
+                                .put("scannedDate", existingFood.getScannedDate().toString())
+                                .put("shared", existingFood.isShared());
                         out.print(jsonResponse.toString());
                     } else {
                         response.sendRedirect("foodDetails.jsp?barcode=" + barcode);
                     }
                 } else {
                     // If barcode does not exist, check if additional parameters are provided
-                    String foodName = request.getParameter("foodName");
-                    String caloriesParam = request.getParameter("calories");
-                    String carbsParam = request.getParameter("carbs");
-                    String proteinParam = request.getParameter("protein");
-                    String fatParam = request.getParameter("fat");
-
-                    if (foodName == null || caloriesParam == null || carbsParam == null ||
-                            proteinParam == null || fatParam == null ||
-                            foodName.isEmpty() || caloriesParam.isEmpty() ||
-                            carbsParam.isEmpty() || proteinParam.isEmpty() || fatParam.isEmpty()) {
+                    if (!hasDetails) {
                         // If additional data is missing
                         if (isMobileRequest) {
                             out.print(new JSONObject()
@@ -14,10 +14,17 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
 
 @WebServlet("/signup")
 public class SignupServlet extends HttpServlet {
+    private userdao userDao;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        userDao = new userdao(MySQLConnection.getDataSource());
+    }
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String username = request.getParameter("username");
@@ -28,9 +35,7 @@ public class SignupServlet extends HttpServlet {
         boolean isMobileRequest = "true".equals(request.getHeader("X-Mobile-App"));
         response.setCharacterEncoding("UTF-8");
 
-        try (Connection conn = MySQLConnection.getConnection()) {
-            userdao userDao = new userdao(conn);
-
+        try {
             // Check if email already exists
             if (userDao.isEmailRegistered(email)) {
                 if (isMobileRequest) {
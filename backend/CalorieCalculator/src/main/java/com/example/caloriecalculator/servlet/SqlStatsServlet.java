@@ -0,0 +1,77 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.helper.SqlStats;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * The top SQL statements as JSON, from {@link SqlStats}. Query parameters: top (how many,
+ * default 20) and order, one of total (time, the default), max, count or rows.
+ *
+ * The statement texts show the schema, so like the catalog import this needs the admin token
+ * (see {@link AuthFilter#isAdmin}).
+ */
+@WebServlet("/stats/sql")
+public class SqlStatsServlet extends HttpServlet {
+    private static final int DEFAULT_TOP = 20;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        if (!AuthFilter.isAdmin(request)) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.getWriter().print(new JSONObject()
+                    .put("success", false)
+                    .put("message", "SQL statistics need the admin token.").toString());
+            return;
+        }
+
+        int top = DEFAULT_TOP;
+        SqlStats.Order order = SqlStats.Order.TOTAL;
+        try {
+            if (request.getParameter("top") != null) {
+                top = Integer.parseInt(request.getParameter("top"));
+            }
+            if (request.getParameter("order") != null) {
+                order = SqlStats.Order.valueOf(request.getParameter("order").toUpperCase());
+            }
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.getWriter().print(new JSONObject()
+                    .put("success", false)
+                    .put("message", "top must be a number and order one of total, max, count or rows.").toString());
+            return;
+        }
+
+        JSONArray statements = new JSONArray();
+        for (SqlStats.Entry entry : SqlStats.top(top, order)) {
+            statements.put(new JSONObject()
+                    .put("sql", entry.getSql())
+                    .put("count", entry.getCount())
+                    .put("errors", entry.getErrorCount())
+                    .put("totalMillis", entry.getTotalNanos() / 1_000_000.0)
+                    .put("avgMillis", entry.getAverageMillis())
+                    .put("maxMillis", entry.getMaxNanos() / 1_000_000.0)
+                    .put("rowsRead", entry.getRowsRead())
+                    .put("rowsUpdated", entry.getRowsUpdated()));
+        }
+
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("tracked", SqlStats.size())
+                    .put("order", order.name().toLowerCase())
+                    .put("statements", statements).toString());
+        }
+    }
+}
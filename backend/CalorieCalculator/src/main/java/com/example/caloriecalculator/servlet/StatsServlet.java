@@ -0,0 +1,146 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.dao.CachedImageResultDao;
+import com.example.caloriecalculator.dao.MacroWriteBehind;
+import com.example.caloriecalculator.dao.UploadQuota;
+import com.example.caloriecalculator.helper.BoundedCache;
+import com.example.caloriecalculator.helper.ImageResizer;
+import com.example.caloriecalculator.helper.ConnectionPool;
+import com.example.caloriecalculator.helper.ModelGateway;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import com.example.caloriecalculator.helper.SingleFlight;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Operational counters as JSON: the connection pool, the in-process caches, request coalescing,
+ * the image result cache, the image resize stage, the upload quota, the model-call gateway and
+ * the macro write-behind log.
+ */
+@WebServlet("/stats")
+public class StatsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        ConnectionPool pool = MySQLConnection.getPool();
+        JSONObject poolJson = new JSONObject()
+                .put("active", pool.getActiveCount())
+                .put("idle", pool.getIdleCount())
+                .put("total", pool.getTotalCount())
+                .put("maxSize", pool.getMaxSize())
+                .put("waiting", pool.getWaitingCount())
+                .put("borrows", pool.getBorrowCount())
+                .put("avgBorrowWaitMillis", pool.getAverageBorrowWaitMillis())
+                .put("maxBorrowWaitMillis", pool.getMaxBorrowWaitMillis())
+                .put("borrowTimeouts", pool.getBorrowTimeoutCount())
+                .put("statementCacheSize", pool.getStatementCacheSize())
+                .put("statementHits", pool.getStatementHitCount())
+                .put("statementMisses", pool.getStatementMissCount())
+                .put("statementEvictions", pool.getStatementEvictionCount())
+                .put("statementHitRate", pool.getStatementHitRate());
+
+        JSONObject caches = new JSONObject();
+        for (BoundedCache<?, ?> cache : BoundedCache.registered().values()) {
+            caches.put(cache.getName(), new JSONObject()
+                    .put("size", cache.size())
+                    .put("hits", cache.getHitCount())
+                    .put("misses", cache.getMissCount())
+                    .put("evictions", cache.getEvictionCount())
+                    .put("expirations", cache.getExpirationCount())
+                    .put("hitRate", cache.getHitRate()));
+        }
+
+        JSONObject singleFlight = new JSONObject();
+        for (SingleFlight<?, ?> flight : SingleFlight.registered().values()) {
+            singleFlight.put(flight.getName(), new JSONObject()
+                    .put("inFlight", flight.getInFlightCount())
+                    .put("executed", flight.getExecutedCount())
+                    .put("shared", flight.getSharedCount()));
+        }
+
+        // Both tiers of the image result cache; a hit here is a model call saved
+        JSONObject imageResults = new JSONObject()
+                .put("memoryHits", CachedImageResultDao.getMemoryHitCount())
+                .put("databaseHits", CachedImageResultDao.getDatabaseHitCount())
+                .put("misses", CachedImageResultDao.getMissCount())
+                .put("hitRate", CachedImageResultDao.getHitRate());
+
+        // Downscale stage in front of the model call; bytesOut/bytesIn is the upstream and storage saving
+        JSONObject imageResize = new JSONObject()
+                .put("resized", ImageResizer.getResizedCount())
+                .put("stripped", ImageResizer.getStrippedCount())
+                .put("passedThrough", ImageResizer.getPassedThroughCount())
+                .put("failed", ImageResizer.getFailedCount())
+                .put("rejected", ImageResizer.getRejectedCount())
+                .put("bytesIn", ImageResizer.getBytesIn())
+                .put("bytesOut", ImageResizer.getBytesOut())
+                .put("queueDepth", ImageResizer.getQueueDepth())
+                .put("avgQueueMillis", ImageResizer.getAverageQueueMillis())
+                .put("avgDecodeMillis", ImageResizer.getAverageDecodeMillis())
+                .put("avgScaleMillis", ImageResizer.getAverageScaleMillis())
+                .put("avgEncodeMillis", ImageResizer.getAverageEncodeMillis())
+                .put("maxMillis", ImageResizer.getMaxMillis());
+
+        JSONObject uploadQuota = new JSONObject()
+                .put("granted", UploadQuota.getGrantedCount())
+                .put("refused", UploadQuota.getRefusedCount())
+                .put("databaseChecks", UploadQuota.getDatabaseCheckCount())
+                .put("trackedDays", UploadQuota.getTrackedDays())
+                .put("trackedUsers", UploadQuota.getTrackedUsers());
+
+        JSONObject modelGateway = new JSONObject()
+                .put("state", ModelGateway.getState().name())
+                .put("active", ModelGateway.getActiveCalls())
+                .put("queued", ModelGateway.getQueueDepth())
+                .put("maxConcurrent", ModelGateway.getMaxConcurrent())
+                .put("maxQueue", ModelGateway.getMaxQueue())
+                .put("calls", ModelGateway.getCallCount())
+                .put("failures", ModelGateway.getFailureCount())
+                .put("slowCalls", ModelGateway.getSlowCallCount())
+                .put("queueFull", ModelGateway.getQueueFullCount())
+                .put("queueTimeouts", ModelGateway.getQueueTimeoutCount())
+                .put("shortCircuited", ModelGateway.getShortCircuitedCount())
+                .put("circuitOpened", ModelGateway.getOpenedCount())
+                .put("avgLatencyMillis", ModelGateway.getAverageLatencyMillis())
+                .put("maxLatencyMillis", ModelGateway.getMaxLatencyMillis());
+
+        JSONObject writeBehind = new JSONObject()
+                .put("enabled", MacroWriteBehind.isEnabled())
+                .put("pending", MacroWriteBehind.getPendingCount())
+                .put("segments", MacroWriteBehind.getSegmentCount())
+                .put("appended", MacroWriteBehind.getAppendedCount())
+                .put("replayed", MacroWriteBehind.getReplayedCount())
+                .put("applied", MacroWriteBehind.getAppliedCount())
+                .put("batches", MacroWriteBehind.getBatchCount())
+                .put("drainFailures", MacroWriteBehind.getDrainFailureCount())
+                .put("skipped", MacroWriteBehind.getSkippedCount())
+                .put("overflows", MacroWriteBehind.getOverflowCount())
+                .put("avgAppendMillis", MacroWriteBehind.getAverageAppendMillis())
+                .put("maxAppendMillis", MacroWriteBehind.getMaxAppendMillis())
+                .put("avgLagMillis", MacroWriteBehind.getAverageLagMillis())
+                .put("maxLagMillis", MacroWriteBehind.getMaxLagMillis());
+
+        try (PrintWriter out = response.getWriter()) {
+            out.print(new JSONObject()
+                    .put("pool", poolJson)
+                    .put("caches", caches)
+                    .put("singleFlight", singleFlight)
+                    .put("imageResults", imageResults)
+                    .put("imageResize", imageResize)
+                    .put("uploadQuota", uploadQuota)
+                    .put("modelGateway", modelGateway)
+                    .put("writeBehind", writeBehind).toString());
+        }
+    }
+}
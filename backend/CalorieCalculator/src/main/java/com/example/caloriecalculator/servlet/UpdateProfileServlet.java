@@ -2,6 +2,7 @@ package com.example.caloriecalculator.servlet;
 
 import com.example.caloriecalculator.helper.MySQLConnection;
 import com.example.caloriecalculator.helper.user;
+import com.example.caloriecalculator.dao.CachedUserDao;
 import com.example.caloriecalculator.dao.userdao;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -11,10 +12,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.sql.Connection;
-import java.sql.SQLException;
 
-import jakarta.servlet.http.HttpSession;
 import org.json.JSONObject;
 
 @WebServlet("/UpdateProfile")
@@ -24,12 +22,7 @@ public class UpdateProfileServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         super.init();
-        try {
-            Connection conn = MySQLConnection.getConnection();
-            userDao = new userdao(conn);
-        } catch (SQLException e) {
-            throw new ServletException("Unable to initialize userDao", e);
-        }
+        userDao = new CachedUserDao(MySQLConnection.getDataSource());
     }
 
     @Override
@@ -41,9 +34,8 @@ public class UpdateProfileServlet extends HttpServlet {
         PrintWriter out = response.getWriter();
         JSONObject jsonResponse = new JSONObject();
 
-        HttpSession session = request.getSession();
-        String username = (String) session.getAttribute("username");
-        String password = (String) session.getAttribute("password");
+        // Token or login session; no password check per request
+        Integer authenticatedUserId = AuthFilter.authenticatedUserId(request);
 
         if (isMobileRequest) {
             // Handle mobile requests (JSON response)
@@ -61,16 +53,22 @@ public class UpdateProfileServlet extends HttpServlet {
                 String goalType = request.getParameter("goalType");
                 String profilePicture = request.getParameter("profilePicture");
 
-                // Find the user based on session data (username and password)
-                user currentUser = userDao.findUser(username, password); // Uses stored session values
-                if (currentUser != null) {
+                if (authenticatedUserId == null) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "User not found.");
+                } else if (authenticatedUserId != userId) {
+                    response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("message", "Cannot update another user's profile.");
+                } else {
                     boolean isUpdated = userDao.updateUserDetails(userId, age, currentWeight, targetWeight,
                             requiredCalories, height, activityLevel,
                             gender, goalType, profilePicture);
 
                     if (isUpdated) {
-                        // After updating, retrieve the updated user details using session data
-                        currentUser = userDao.findUser(username, password);  // Re-fetch user to get updated details
+                        // The merged profile, from memory when the user is cached
+                        user currentUser = userDao.findUserById(userId);
 
                         if (currentUser != null) {
                             jsonResponse.put("success", true);
@@ -93,9 +91,6 @@ public class UpdateProfileServlet extends HttpServlet {
                         jsonResponse.put("success", false);
                         jsonResponse.put("message", "No fields were updated. Please check your input.");
                     }
-                } else {
-                    jsonResponse.put("success", false);
-                    jsonResponse.put("message", "User not found.");
                 }
             } catch (Exception e) {
                 jsonResponse.put("success", false);
@@ -0,0 +1,73 @@
+package com.example.caloriecalculator.servlet;
+
+import com.example.caloriecalculator.helper.AccessTokens;
+import com.example.caloriecalculator.helper.MySQLConnection;
+import com.example.caloriecalculator.helper.user;
+import com.example.caloriecalculator.dao.CachedUserDao;
+import com.example.caloriecalculator.dao.userdao;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Signs the app back in from its stored token: checks the signature and expiry, loads the
+ * profile with one query and answers like /login, with a fresh token. There is no BCrypt check.
+ * The token comes from the "token" form field or an Authorization: Bearer header.
+ */
+@WebServlet("/validateToken")
+public class ValidateTokenServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(ValidateTokenServlet.class.getName());
+
+    private userdao userDao;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        userDao = new CachedUserDao(MySQLConnection.getDataSource());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType("application/json");
+
+        String token = request.getParameter("token");
+        Integer userId = token != null
+                ? AccessTokens.verify(token)
+                : (Integer) request.getAttribute(AuthFilter.USER_ID_ATTRIBUTE);
+        if (userId == null) {
+            sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token.");
+            return;
+        }
+
+        try {
+            user currentUser = userDao.findUserById(userId);
+            if (currentUser == null) {
+                sendError(response, HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token.");
+                return;
+            }
+            JSONObject jsonResponse = LoginServlet.profileJson(currentUser);
+            jsonResponse.put("token", AccessTokens.issue(userId));
+            response.getWriter().print(jsonResponse.toString());
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Token validation failed for user " + userId, e);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error.");
+        }
+    }
+
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.getWriter().print(new JSONObject()
+                .put("success", false)
+                .put("message", message).toString());
+    }
+}
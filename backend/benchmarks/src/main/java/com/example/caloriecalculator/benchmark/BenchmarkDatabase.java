@@ -0,0 +1,193 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.helper.ConnectionPool;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * In-process H2 database (MySQL mode) with the production schema and a fixed, seeded data set.
+ *
+ * Volumes can be changed with -jvmArgsAppend "-Dbench.users=... -Dbench.days=... -Dbench.foodsPerUser=...".
+ * Every user shares one BCrypt hash of {@link #PASSWORD} at the production cost factor, so login
+ * benchmarks pay a realistic verification without a long setup.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    public static final String PASSWORD = "benchmark-password";
+    public static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+    public static final LocalDate LAST_DAY = LocalDate.of(2025, 6, 30);
+
+    public final int users = Integer.getInteger("bench.users", 1_000);
+    public final int days = Integer.getInteger("bench.days", 90);
+    public final int foodsPerUser = Integer.getInteger("bench.foodsPerUser", 50);
+
+    public ConnectionPool dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        // Unique name per trial so forks and classes never share state
+        String url = "jdbc:h2:mem:bench" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        dataSource = new ConnectionPool(url, "sa", "", 1, 16, 300_000L, 5_000L, 2);
+        try (Connection conn = dataSource.getConnection()) {
+            runScript(conn, "/schema.sql");
+            conn.setAutoCommit(false);
+            loadUsers(conn);
+            loadMacroEntries(conn);
+            loadScannedFoods(conn);
+            backfillDailyTotals(conn);
+            conn.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("SHUTDOWN");
+        }
+        dataSource.close();
+    }
+
+    public static String username(int userId) {
+        return "user" + userId;
+    }
+
+    // Valid EAN-13 barcode (with check digit), unique per (user, index)
+    public static String barcode(int userId, int index) {
+        String digits = String.format("400%05d%04d", userId, index);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            sum += (i % 2 == 1) ? digit * 3 : digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    public LocalDate day(int offset) {
+        return LAST_DAY.minusDays(offset);
+    }
+
+    private void runScript(Connection conn, String resource) throws SQLException, IOException {
+        String script;
+        try (InputStream in = BenchmarkDatabase.class.getResourceAsStream(resource)) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String sql : script.split(";")) {
+                String trimmed = sql.replaceAll("(?m)^--.*$", "").trim();
+                if (!trimmed.isEmpty()) {
+                    st.execute(trimmed);
+                }
+            }
+        }
+    }
+
+    private void loadUsers(Connection conn) throws SQLException {
+        String hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt());
+        String sql = "INSERT INTO users (userId, username, email, password, displayName, age, currentWeight, targetWeight, "
+                + "requiredCalories, height, activityLevel, gender, goalType, memberType, streak, last_logged_date) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(42);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                ps.setInt(1, id);
+                ps.setString(2, username(id));
+                ps.setString(3, username(id) + "@example.com");
+                ps.setString(4, hash);
+                ps.setString(5, "User " + id);
+                ps.setInt(6, 18 + random.nextInt(50));
+                ps.setDouble(7, 55 + random.nextInt(50));
+                ps.setDouble(8, 55 + random.nextInt(40));
+                ps.setInt(9, 1600 + random.nextInt(1400));
+                ps.setDouble(10, 150 + random.nextInt(45));
+                ps.setString(11, "moderate");
+                ps.setString(12, random.nextBoolean() ? "male" : "female");
+                ps.setString(13, "lose");
+                ps.setString(14, random.nextInt(10) == 0 ? "premium" : "free");
+                ps.setInt(15, random.nextInt(30));
+                ps.setDate(16, Date.valueOf(LAST_DAY));
+                ps.addBatch();
+                if (id % 1_000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void loadMacroEntries(Connection conn) throws SQLException {
+        String sql = "INSERT INTO macro_entries (userId, entryDate, mealType, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(43);
+        int pending = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                for (int d = 0; d < days; d++) {
+                    Date date = Date.valueOf(day(d));
+                    for (String meal : MEAL_TYPES) {
+                        ps.setInt(1, id);
+                        ps.setDate(2, date);
+                        ps.setString(3, meal);
+                        ps.setInt(4, 150 + random.nextInt(700));
+                        ps.setBigDecimal(5, BigDecimal.valueOf(random.nextInt(9000), 2));
+                        ps.setBigDecimal(6, BigDecimal.valueOf(random.nextInt(5000), 2));
+                        ps.setBigDecimal(7, BigDecimal.valueOf(random.nextInt(4000), 2));
+                        ps.addBatch();
+                        if (++pending == 5_000) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void backfillDailyTotals(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount) "
+                    + "SELECT userId, entryDate, SUM(calories), SUM(carbs), SUM(protein), SUM(fat), COUNT(*) "
+                    + "FROM macro_entries GROUP BY userId, entryDate");
+        }
+    }
+
+    private void loadScannedFoods(Connection conn) throws SQLException {
+        String sql = "INSERT INTO scanned_foods (userId, barcode, foodName, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(44);
+        int pending = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                for (int i = 0; i < foodsPerUser; i++) {
+                    ps.setString(1, String.valueOf(id));
+                    ps.setString(2, barcode(id, i));
+                    ps.setString(3, "Product " + id + "-" + i);
+                    ps.setInt(4, 50 + random.nextInt(500));
+                    ps.setBigDecimal(5, BigDecimal.valueOf(random.nextInt(6000), 2));
+                    ps.setBigDecimal(6, BigDecimal.valueOf(random.nextInt(3000), 2));
+                    ps.setBigDecimal(7, BigDecimal.valueOf(random.nextInt(3000), 2));
+                    ps.addBatch();
+                    if (++pending == 5_000) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+}
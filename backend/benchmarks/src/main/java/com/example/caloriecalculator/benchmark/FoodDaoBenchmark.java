@@ -0,0 +1,83 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.dao.CachedFoodDao;
+import com.example.caloriecalculator.dao.FoodDao;
+import com.example.caloriecalculator.helper.ScannedFood;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FoodDao lookups behind /scanFood, for barcodes the user has and has not scanned before,
+ * straight to the database and through the barcode cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class FoodDaoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dao {
+        @Param({"false", "true"})
+        public boolean cached;
+
+        public FoodDao dao;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) {
+            dao = cached ? new CachedFoodDao(db.dataSource) : new FoodDao(db.dataSource);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom(11);
+        private int users;
+        private int foodsPerUser;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) {
+            users = db.users;
+            foodsPerUser = db.foodsPerUser;
+        }
+
+        int userId() {
+            return 1 + random.nextInt(users);
+        }
+
+        String knownBarcode(int userId) {
+            return BenchmarkDatabase.barcode(userId, random.nextInt(foodsPerUser));
+        }
+
+        String unknownBarcode(int userId) {
+            return BenchmarkDatabase.barcode(userId, foodsPerUser + random.nextInt(1_000));
+        }
+    }
+
+    @Benchmark
+    public ScannedFood getScannedFoodHit(Dao dao, Picker picker) throws SQLException {
+        int userId = picker.userId();
+        return dao.dao.getScannedFood(String.valueOf(userId), picker.knownBarcode(userId));
+    }
+
+    @Benchmark
+    public ScannedFood getScannedFoodMiss(Dao dao, Picker picker) throws SQLException {
+        int userId = picker.userId();
+        return dao.dao.getScannedFood(String.valueOf(userId), picker.unknownBarcode(userId));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.helper.ImageUpload;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request parsing in ImageQueryServlet.doPost: the legacy JSON body (read, pull out base64Image, decode)
+ * against the binary upload mode streaming into a pooled off-heap ImageUpload.
+ * Run with -prof gc to compare the per-request allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ImageDecodeBenchmark {
+
+    /** Decoded photo size; the iOS client sends roughly 300KB-1MB, older clients several MB. */
+    @Param({"256", "1024", "4096"})
+    public int imageKb;
+
+    private byte[] image;
+    private String base64Image;
+    private String requestBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = new byte[imageKb * 1024];
+        new Random(1).nextBytes(image);
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        image[2] = (byte) 0xFF;
+        base64Image = Base64.getEncoder().encodeToString(image);
+        requestBody = new JSONObject()
+                .put("userId", 42)
+                .put("entryDate", "2025-06-30")
+                .put("base64Image", base64Image)
+                .toString();
+    }
+
+    @Benchmark
+    public byte[] decodeBase64() {
+        return Base64.getDecoder().decode(base64Image);
+    }
+
+    @Benchmark
+    public String parseRequestJson() {
+        return new JSONObject(requestBody).getString("base64Image");
+    }
+
+    // Mirrors doPost up to the temp file write: line-by-line read, JSON parse, decode
+    @Benchmark
+    public byte[] readParseDecode() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new StringReader(requestBody));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            sb.append(line);
+        }
+        JSONObject inputJson = new JSONObject(sb.toString());
+        inputJson.getInt("userId");
+        inputJson.getString("entryDate");
+        return Base64.getDecoder().decode(inputJson.getString("base64Image"));
+    }
+
+    // Binary mode: body streamed through a channel into a pooled direct buffer, sniffed and released
+    @Benchmark
+    public int readBinaryUpload() throws IOException {
+        try (ImageUpload upload = ImageUpload.read(new ByteArrayInputStream(image))) {
+            return upload.size();
+        }
+    }
+}
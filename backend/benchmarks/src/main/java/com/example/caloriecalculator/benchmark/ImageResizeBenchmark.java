@@ -0,0 +1,64 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.helper.ImageResizer;
+import com.example.caloriecalculator.helper.ImageUpload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * The downscale stage in ImageQueryServlet: a full-resolution phone photo (older clients) against
+ * one the iOS app has already scaled, which only has its metadata stripped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgs = "-Djava.awt.headless=true")
+public class ImageResizeBenchmark {
+
+    /** Long edge of the uploaded JPEG; 4032 is a 12MP iPhone photo. */
+    @Param({"1024", "4032"})
+    public int longEdge;
+
+    private byte[] photo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(longEdge, longEdge * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, longEdge, longEdge, Color.DARK_GRAY));
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        photo = out.toByteArray();
+    }
+
+    @Benchmark
+    public int process() throws IOException {
+        try (ImageUpload upload = ImageUpload.wrap(photo)) {
+            ImageResizer.process(upload);
+            return upload.size();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.ScannedFood;
+import com.example.caloriecalculator.helper.user;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * org.json response building as done in the servlets, from already-loaded rows to the response string.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JsonResponseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class MacroRows {
+        /** Rows in a FindMacro response: one day is ~4, a month of days would be ~120. */
+        @Param({"4", "30", "120"})
+        public int entries;
+
+        private final List<MacroEntry> macroEntries = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (int i = 0; i < entries; i++) {
+                MacroEntry entry = new MacroEntry();
+                entry.setUserId(42);
+                entry.setEntryDate("2025-06-30");
+                entry.setMealType(BenchmarkDatabase.MEAL_TYPES[i % BenchmarkDatabase.MEAL_TYPES.length]);
+                entry.setCalories(400 + i);
+                entry.setCarbs(new BigDecimal("45.50"));
+                entry.setProtein(new BigDecimal("30.25"));
+                entry.setFat(new BigDecimal("12.00"));
+                macroEntries.add(entry);
+            }
+        }
+    }
+
+    private user loginUser;
+    private ScannedFood scannedFood;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        loginUser = new user();
+        loginUser.setUser_id(42);
+        loginUser.setUsername("user42");
+        loginUser.setPassword("$2a$10$abcdefghijklmnopqrstuuJ0123456789abcdefghijklmnopqrstu");
+        loginUser.setEmail("user42@example.com");
+        loginUser.setAge(31);
+        loginUser.setCurrentWeight(80.5);
+        loginUser.setTargetWeight(74.0);
+        loginUser.setRequiredCalories(2200);
+        loginUser.setHeight(178.0);
+        loginUser.setActivityLevel("moderate");
+        loginUser.setGender("male");
+        loginUser.setGoalType("lose");
+        loginUser.setMemberType("free");
+        loginUser.setStreak(12);
+        loginUser.setLastLoggedDate("2025-06-30");
+
+        scannedFood = new ScannedFood(1, "42", "4006381333931", "Granola Bar", 190,
+                new BigDecimal("29.00"), new BigDecimal("3.50"), new BigDecimal("7.00"),
+                Timestamp.valueOf("2025-06-30 08:15:00"));
+    }
+
+    // Mirrors FindMacroServlet.doPost
+    @Benchmark
+    public String findMacroResponse(MacroRows rows) {
+        JSONArray jsonResponse = new JSONArray();
+        for (MacroEntry entry : rows.macroEntries) {
+            JSONObject macroData = new JSONObject();
+            macroData.put("userId", entry.getUserId());
+            macroData.put("entryDate", entry.getEntryDate());
+            macroData.put("mealType", entry.getMealType());
+            macroData.put("calories", entry.getCalories());
+            macroData.put("carbs", entry.getCarbs().intValue());
+            macroData.put("protein", entry.getProtein().intValue());
+            macroData.put("fat", entry.getFat().intValue());
+            jsonResponse.put(macroData);
+        }
+        return jsonResponse.toString();
+    }
+
+    // Mirrors the mobile branch of LoginServlet.doPost
+    @Benchmark
+    public String loginResponse() {
+        user currentUser = loginUser;
+        JSONObject jsonResponse = new JSONObject();
+        jsonResponse.put("success", true);
+        jsonResponse.put("userId", currentUser.getUser_id());
+        jsonResponse.put("username", currentUser.getUsername());
+        jsonResponse.put("password", currentUser.getPassword());
+        jsonResponse.put("displayName", currentUser.getDisplayName());
+        jsonResponse.put("email", currentUser.getEmail());
+        jsonResponse.put("age", currentUser.getAge());
+        jsonResponse.put("currentWeight", currentUser.getCurrentWeight());
+        jsonResponse.put("targetWeight", currentUser.getTargetWeight());
+        jsonResponse.put("requiredCalories", currentUser.getRequiredCalories());
+        jsonResponse.put("height", currentUser.getHeight());
+        jsonResponse.put("activityLevel", currentUser.getActivityLevel());
+        jsonResponse.put("gender", currentUser.getGender());
+        jsonResponse.put("goalType", currentUser.getGoalType());
+        jsonResponse.put("profilePicture", currentUser.getProfilePicture());
+        jsonResponse.put("memberType", currentUser.getMemberType());
+        jsonResponse.put("streak", currentUser.getStreak());
+        jsonResponse.put("last_logged_date", currentUser.getLastLoggedDate());
+        return jsonResponse.toString();
+    }
+
+    // Mirrors the "Food already scanned." branch of ScanFoodServlet.doPost
+    @Benchmark
+    public String scanFoodResponse() {
+        ScannedFood existingFood = scannedFood;
+        return new JSONObject()
+                .put("success", true)
+                .put("message", "Food already scanned.")
+                .put("foodName", existingFood.getFoodName())
+                .put("calories", existingFood.getCalories())
+                .put("carbs", existingFood.getCarbs())
+                .put("protein", existingFood.getProtein())
+                .put("fat", existingFood.getFat())
+                .put("scannedDate", existingFood.getScannedDate().toString())
+                .toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.caloriecalculator.benchmark;
+
+import com.example.caloriecalculator.dao.userdao;
+import com.example.caloriecalculator.helper.MacroEntry;
+import com.example.caloriecalculator.helper.MacroTotals;
+import com.example.caloriecalculator.helper.user;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * userdao paths hit by /login, /UpdateProfile, /LogMacro and /FindMacro.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class UserDaoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dao {
+        public userdao dao;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) {
+            dao = new userdao(db.dataSource);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom(7);
+        private int users;
+        private int days;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkDatabase db) {
+            users = db.users;
+            days = db.days;
+        }
+
+        int userId() {
+            return 1 + random.nextInt(users);
+        }
+
+        int dayOffset() {
+            return random.nextInt(days);
+        }
+    }
+
+    /** Number of non-null fields passed to updateUserDetails, i.e. the size of the SET list. */
+    @State(Scope.Benchmark)
+    public static class UpdateShape {
+        @Param({"1", "3", "9"})
+        public int fields;
+    }
+
+    // Dominated by BCrypt.checkpw at the production cost factor
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public user findUser(Dao dao, Picker picker) throws SQLException {
+        return dao.dao.findUser(BenchmarkDatabase.username(picker.userId()), BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public user getUserById(Dao dao, Picker picker) throws SQLException {
+        return dao.dao.getUserById(picker.userId());
+    }
+
+    @Benchmark
+    public boolean updateUserDetails(Dao dao, Picker picker, UpdateShape shape) throws SQLException {
+        int n = shape.fields;
+        return dao.dao.updateUserDetails(picker.userId(),
+                n > 0 ? 30 : null,
+                n > 1 ? 80.5 : null,
+                n > 2 ? 72.0 : null,
+                n > 3 ? 2200 : null,
+                n > 4 ? 178.0 : null,
+                n > 5 ? "active" : null,
+                n > 6 ? "male" : null,
+                n > 7 ? "maintain" : null,
+                n > 8 ? "avatar.png" : null);
+    }
+
+    @Benchmark
+    public List<MacroEntry> findMacro(BenchmarkDatabase db, Dao dao, Picker picker) throws SQLException {
+        return dao.dao.findMacro(picker.userId(), db.day(picker.dayOffset()).toString());
+    }
+
+    @Benchmark
+    public boolean logMacro(BenchmarkDatabase db, Dao dao, Picker picker) throws SQLException {
+        return dao.dao.logMacro(picker.userId(), db.day(picker.dayOffset()).toString(), "snack", 180,
+                new BigDecimal("20.50"), new BigDecimal("4.00"), new BigDecimal("8.25"));
+    }
+
+    // One 30-day chart via the range query, versus 30 findMacro calls
+    @Benchmark
+    public List<MacroTotals> findMacroTotals30Days(BenchmarkDatabase db, Dao dao, Picker picker) throws SQLException {
+        int start = picker.dayOffset();
+        return dao.dao.findMacroTotals(picker.userId(), db.day(start + 29).toString(), db.day(start).toString(), false);
+    }
+}
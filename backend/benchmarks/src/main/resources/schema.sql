@@ -0,0 +1,100 @@
+-- Mirror of the production MySQL schema used by the DAOs, loaded into H2 (MODE=MySQL).
+
+CREATE TABLE users (
+    userId INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    email VARCHAR(100) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    displayName VARCHAR(100),
+    age INT,
+    currentWeight DOUBLE,
+    targetWeight DOUBLE,
+    requiredCalories INT,
+    height DOUBLE,
+    activityLevel VARCHAR(50),
+    gender VARCHAR(20),
+    goalType VARCHAR(50),
+    profilePicture VARCHAR(255),
+    memberType VARCHAR(20) DEFAULT 'free',
+    streak INT DEFAULT 0,
+    last_logged_date DATE
+);
+
+CREATE TABLE macro_entries (
+    entryId INT AUTO_INCREMENT PRIMARY KEY,
+    userId INT NOT NULL,
+    entryDate DATE NOT NULL,
+    mealType VARCHAR(20) NOT NULL,
+    calories INT NOT NULL,
+    carbs DECIMAL(6,2) NOT NULL,
+    protein DECIMAL(6,2) NOT NULL,
+    fat DECIMAL(6,2) NOT NULL
+);
+CREATE INDEX idx_macro_entries_user_date ON macro_entries (userId, entryDate);
+
+CREATE TABLE scanned_foods (
+    foodId INT AUTO_INCREMENT PRIMARY KEY,
+    userId VARCHAR(20) NOT NULL,
+    barcode VARCHAR(32) NOT NULL,
+    foodName VARCHAR(255) NOT NULL,
+    calories INT NOT NULL,
+    carbs DECIMAL(6,2) NOT NULL,
+    protein DECIMAL(6,2) NOT NULL,
+    fat DECIMAL(6,2) NOT NULL,
+    scannedDate TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE UNIQUE INDEX uq_scanned_foods_user_barcode ON scanned_foods (userId, barcode);
+
+CREATE TABLE image_queries (
+    queryId INT AUTO_INCREMENT PRIMARY KEY,
+    userId INT NOT NULL,
+    base64Input LONGTEXT,
+    gptResponse TEXT,
+    sentAt TIMESTAMP,
+    imageDate DATE,
+    contentHash CHAR(64),
+    imageSize INT,
+    mimeType VARCHAR(32)
+);
+CREATE INDEX idx_image_queries_user_date ON image_queries (userId, imageDate);
+
+CREATE TABLE daily_totals (
+    userId INT NOT NULL,
+    totalDate DATE NOT NULL,
+    calories INT NOT NULL DEFAULT 0,
+    carbs DECIMAL(10,2) NOT NULL DEFAULT 0,
+    protein DECIMAL(10,2) NOT NULL DEFAULT 0,
+    fat DECIMAL(10,2) NOT NULL DEFAULT 0,
+    entryCount INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (userId, totalDate)
+);
+
+CREATE TABLE food_catalog (
+    barcode VARCHAR(32) NOT NULL PRIMARY KEY,
+    foodName VARCHAR(255) NOT NULL,
+    calories INT NOT NULL,
+    carbs DECIMAL(6,2) NOT NULL,
+    protein DECIMAL(6,2) NOT NULL,
+    fat DECIMAL(6,2) NOT NULL,
+    createdBy VARCHAR(20),
+    createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE image_results (
+    contentHash CHAR(64) NOT NULL PRIMARY KEY,
+    label VARCHAR(255) NOT NULL,
+    calories INT NOT NULL,
+    protein INT NOT NULL,
+    carbs INT NOT NULL,
+    fat INT NOT NULL,
+    createdAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    lastHitAt TIMESTAMP NULL,
+    hits INT NOT NULL DEFAULT 0
+);
+CREATE INDEX idx_image_results_created ON image_results (createdAt);
+
+CREATE TABLE macro_log_checkpoints (
+    logId CHAR(36) NOT NULL PRIMARY KEY,
+    lastSequence BIGINT NOT NULL,
+    updatedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,109 @@
+package com.example.caloriecalculator.loadtest;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The calls the iOS app makes, by the view that makes them, and the weighted mix they are replayed
+ * in. load.mix overrides the weights, as "findMacro=35,logMacro=20,..."; calls left out of it are
+ * not made at all.
+ */
+enum Call {
+    // LoginView
+    LOGIN("login", "/login"),
+    // App launch with a saved token
+    VALIDATE_TOKEN("validateToken", "/validateToken"),
+    // Dashboard and history, one day at a time
+    FIND_MACRO("findMacro", "/FindMacro"),
+    // Manual meal entry
+    LOG_MACRO("logMacro", "/LogMacro"),
+    // Barcode scanner lookup
+    SCAN_FOOD("scanFood", "/scanFood"),
+    // Meal photo
+    IMAGE_QUERY("imageQuery", "/ImageQuery"),
+    // Settings
+    UPDATE_PROFILE("updateProfile", "/UpdateProfile");
+
+    static final String DEFAULT_MIX = "findMacro=35,logMacro=20,scanFood=15,validateToken=10,imageQuery=10,login=5,updateProfile=5";
+
+    private final String key;
+    private final String path;
+
+    Call(String key, String path) {
+        this.key = key;
+        this.path = path;
+    }
+
+    String path() {
+        return path;
+    }
+
+    static Call fromKey(String key) {
+        for (Call call : values()) {
+            if (call.key.equalsIgnoreCase(key)) {
+                return call;
+            }
+        }
+        throw new IllegalArgumentException("Unknown call in load.mix: " + key);
+    }
+
+    /** Picks calls at random in proportion to their weights. */
+    static final class Mix {
+        private final Call[] calls;
+        private final int[] cumulative;
+        private final Map<Call, Integer> weights;
+
+        private Mix(Map<Call, Integer> weights) {
+            this.weights = weights;
+            List<Call> picked = new ArrayList<>();
+            List<Integer> bounds = new ArrayList<>();
+            int total = 0;
+            for (Map.Entry<Call, Integer> entry : weights.entrySet()) {
+                total += entry.getValue();
+                picked.add(entry.getKey());
+                bounds.add(total);
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("load.mix has no call with a positive weight");
+            }
+            this.calls = picked.toArray(new Call[0]);
+            this.cumulative = bounds.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        static Mix parse(String spec) {
+            Map<Call, Integer> weights = new EnumMap<>(Call.class);
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected name=weight in load.mix, got: " + part);
+                }
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight > 0) {
+                    weights.put(fromKey(pair[0].trim()), weight);
+                }
+            }
+            return new Mix(weights);
+        }
+
+        Call next() {
+            int ticket = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (ticket < cumulative[i]) {
+                    return calls[i];
+                }
+            }
+            return calls[calls.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            weights.forEach((call, weight) -> out.append(out.length() == 0 ? "" : ",")
+                    .append(call.key).append('=').append(weight));
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.caloriecalculator.loadtest;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The packaged WAR deployed in an embedded Tomcat, in this JVM, against an in-memory H2 database.
+ *
+ * The app is configured through the same system properties as in production, set here before it
+ * is deployed: macrotracker.db.* to reach the H2 database, macrotracker.model.url for the stub
+ * model, a temporary image store, and an upload quota the load users can't run out of. Anything
+ * already given with -D is left alone, so pool sizes, cache sizes and the rest can be varied per
+ * run the same way. The connector's request thread count is load.serverThreads (default 200),
+ * the stand-in for WildFly's worker threads when sizing them.
+ */
+final class EmbeddedApp {
+    static final String DB_URL = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private final Tomcat tomcat;
+    private final Path baseDir;
+    private final String contextPath;
+
+    private EmbeddedApp(Tomcat tomcat, Path baseDir, String contextPath) {
+        this.tomcat = tomcat;
+        this.baseDir = baseDir;
+        this.contextPath = contextPath;
+    }
+
+    static EmbeddedApp start(Path war, String contextPath, String modelUrl, LoadDatabase database)
+            throws IOException, SQLException, LifecycleException {
+        Path baseDir = Files.createTempDirectory("macrotracker-loadtest");
+        setDefault("macrotracker.db.url", DB_URL);
+        setDefault("macrotracker.db.user", "sa");
+        setDefault("macrotracker.db.password", "");
+        setDefault("macrotracker.model.url", modelUrl);
+        setDefault("macrotracker.imageStore.dir", baseDir.resolve("images").toString());
+        setDefault("macrotracker.writeBehind.dir", baseDir.resolve("wal").toString());
+        setDefault("macrotracker.token.secret", UUID.randomUUID().toString());
+        setDefault("macrotracker.uploadQuota." + LoadDatabase.MEMBER_TYPE, String.valueOf(Integer.MAX_VALUE));
+
+        // Kept open so the in-memory database outlives every pooled connection the app closes
+        Connection keepAlive = DriverManager.getConnection(System.getProperty("macrotracker.db.url"),
+                System.getProperty("macrotracker.db.user"), System.getProperty("macrotracker.db.password"));
+        database.createSchema(keepAlive);
+        database.load(keepAlive);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(baseDir.toString());
+        // The WAR is unpacked here; without it Tomcat reads every class out of the packed WAR
+        Files.createDirectories(baseDir.resolve("webapps"));
+        // No JSP engine here; the mobile calls are all servlets
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        tomcat.setPort(Integer.getInteger("load.port", 0));
+        Connector connector = tomcat.getConnector();
+        connector.setProperty("maxThreads", String.valueOf(Integer.getInteger("load.serverThreads", 200)));
+        connector.setProperty("maxConnections", String.valueOf(Integer.getInteger("load.serverConnections", 8_192)));
+
+        Context context = tomcat.addWebapp(contextPath, war.toAbsolutePath().toString());
+        // The app's classes are also on this classpath for LatencyHistogram; only WEB-INF is the app
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+        tomcat.start();
+        if (!context.getState().isAvailable()) {
+            tomcat.stop();
+            throw new IllegalStateException("Deploying " + war + " failed; see the log above");
+        }
+        return new EmbeddedApp(tomcat, baseDir, contextPath);
+    }
+
+    private static void setDefault(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + tomcat.getConnector().getLocalPort() + contextPath;
+    }
+
+    Path getBaseDir() {
+        return baseDir;
+    }
+
+    void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
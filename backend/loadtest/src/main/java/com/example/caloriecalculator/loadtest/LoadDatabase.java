@@ -0,0 +1,175 @@
+package com.example.caloriecalculator.loadtest;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Accounts and history for the virtual users: load.users users with load.days days of meals
+ * ending yesterday and load.foodsPerUser scanned barcodes each, the same shape as the benchmark
+ * data set. Every account has the password {@link #PASSWORD} (one shared BCrypt hash at the
+ * production cost factor) and memberType "loadtest", so the embedded server can lift the upload
+ * quota for them alone.
+ */
+final class LoadDatabase {
+    static final String PASSWORD = "loadtest-password";
+    static final String MEMBER_TYPE = "loadtest";
+    static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+
+    final int users = Integer.getInteger("load.users", 1_000);
+    final int days = Integer.getInteger("load.days", 30);
+    final int foodsPerUser = Integer.getInteger("load.foodsPerUser", 20);
+
+    static String username(int userId) {
+        return "loaduser" + userId;
+    }
+
+    // Valid EAN-13 barcode (with check digit), unique per (user, index)
+    static String barcode(int userId, int index) {
+        String digits = String.format("401%05d%04d", userId, index);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            sum += (i % 2 == 1) ? digit * 3 : digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    // Creates the tables from the H2 schema script; only for the embedded database
+    void createSchema(Connection conn) throws SQLException, IOException {
+        String script;
+        try (InputStream in = LoadDatabase.class.getResourceAsStream("/schema.sql")) {
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String sql : script.split(";")) {
+                String trimmed = sql.replaceAll("(?m)^--.*$", "").trim();
+                if (!trimmed.isEmpty()) {
+                    st.execute(trimmed);
+                }
+            }
+        }
+    }
+
+    void load(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            loadUsers(conn);
+            loadMacroEntries(conn);
+            loadScannedFoods(conn);
+            backfillDailyTotals(conn);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void loadUsers(Connection conn) throws SQLException {
+        String hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt());
+        String sql = "INSERT INTO users (userId, username, email, password, displayName, age, currentWeight, targetWeight, "
+                + "requiredCalories, height, activityLevel, gender, goalType, memberType, streak, last_logged_date) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(42);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                ps.setInt(1, id);
+                ps.setString(2, username(id));
+                ps.setString(3, username(id) + "@example.com");
+                ps.setString(4, hash);
+                ps.setString(5, "Load User " + id);
+                ps.setInt(6, 18 + random.nextInt(50));
+                ps.setDouble(7, 55 + random.nextInt(50));
+                ps.setDouble(8, 55 + random.nextInt(40));
+                ps.setInt(9, 1600 + random.nextInt(1400));
+                ps.setDouble(10, 150 + random.nextInt(45));
+                ps.setString(11, "moderate");
+                ps.setString(12, random.nextBoolean() ? "male" : "female");
+                ps.setString(13, "lose");
+                ps.setString(14, MEMBER_TYPE);
+                ps.setInt(15, random.nextInt(30));
+                ps.setDate(16, Date.valueOf(LocalDate.now().minusDays(1)));
+                ps.addBatch();
+                if (id % 1_000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void loadMacroEntries(Connection conn) throws SQLException {
+        String sql = "INSERT INTO macro_entries (userId, entryDate, mealType, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(43);
+        LocalDate today = LocalDate.now();
+        int pending = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                for (int d = 1; d <= days; d++) {
+                    Date date = Date.valueOf(today.minusDays(d));
+                    for (String meal : MEAL_TYPES) {
+                        ps.setInt(1, id);
+                        ps.setDate(2, date);
+                        ps.setString(3, meal);
+                        ps.setInt(4, 150 + random.nextInt(700));
+                        ps.setBigDecimal(5, BigDecimal.valueOf(random.nextInt(9000), 2));
+                        ps.setBigDecimal(6, BigDecimal.valueOf(random.nextInt(5000), 2));
+                        ps.setBigDecimal(7, BigDecimal.valueOf(random.nextInt(4000), 2));
+                        ps.addBatch();
+                        if (++pending == 5_000) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void backfillDailyTotals(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO daily_totals (userId, totalDate, calories, carbs, protein, fat, entryCount) "
+                    + "SELECT userId, entryDate, SUM(calories), SUM(carbs), SUM(protein), SUM(fat), COUNT(*) "
+                    + "FROM macro_entries WHERE userId BETWEEN 1 AND " + users + " GROUP BY userId, entryDate");
+        }
+    }
+
+    private void loadScannedFoods(Connection conn) throws SQLException {
+        String sql = "INSERT INTO scanned_foods (userId, barcode, foodName, calories, carbs, protein, fat) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        Random random = new Random(44);
+        int pending = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int id = 1; id <= users; id++) {
+                for (int i = 0; i < foodsPerUser; i++) {
+                    ps.setString(1, String.valueOf(id));
+                    ps.setString(2, barcode(id, i));
+                    ps.setString(3, "Product " + id + "-" + i);
+                    ps.setInt(4, 50 + random.nextInt(500));
+                    ps.setBigDecimal(5, BigDecimal.valueOf(random.nextInt(6000), 2));
+                    ps.setBigDecimal(6, BigDecimal.valueOf(random.nextInt(3000), 2));
+                    ps.setBigDecimal(7, BigDecimal.valueOf(random.nextInt(3000), 2));
+                    ps.addBatch();
+                    if (++pending == 5_000) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+}
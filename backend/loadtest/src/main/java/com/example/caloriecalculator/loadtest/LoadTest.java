@@ -0,0 +1,127 @@
+package com.example.caloriecalculator.loadtest;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Replays the iOS app's request mix against the WAR and reports throughput and p50/p99/p99.9
+ * latency per endpoint, for sizing request threads, the connection pool and the model gateway
+ * before a release.
+ *
+ * By default the WAR at load.war is deployed in an embedded Tomcat (see {@link EmbeddedApp}) with
+ * an in-memory database seeded by {@link LoadDatabase} and the vision model replaced by
+ * {@link StubModel}. With load.target set to the base URL of a deployed WAR, that server is driven
+ * instead; the stub model still runs, on load.model.port, for that server's macrotracker.model.url,
+ * and load.jdbc.url, if set, is seeded with the load accounts first (into an empty database: the
+ * accounts take userIds 1 to load.users).
+ *
+ * load.clients phones each run {@link VirtualUser}, closed-loop unless load.rate gives a target
+ * total request rate. Calls due in the first load.warmupSeconds are made but not counted; the
+ * run then lasts load.durationSeconds. Every -Dmacrotracker.* setting reaches the embedded app.
+ */
+public final class LoadTest {
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = System.getProperty("load.target");
+        Path war = Paths.get(System.getProperty("load.war", "../CalorieCalculator/target/CalorieCalculator-1.0-SNAPSHOT.war"));
+        String contextPath = System.getProperty("load.contextPath", "/CalorieCalculator-1.0-SNAPSHOT");
+        int clients = Integer.getInteger("load.clients", 50);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("load.durationSeconds", 60);
+        double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+        Call.Mix mix = Call.Mix.parse(System.getProperty("load.mix", Call.DEFAULT_MIX));
+        LoadDatabase database = new LoadDatabase();
+
+        StubModel model = StubModel.start(Integer.getInteger("load.model.port", 0),
+                Long.getLong("load.model.latencyMillis", 1_500L),
+                Long.getLong("load.model.jitterMillis", 1_000L),
+                Double.parseDouble(System.getProperty("load.model.errorPercent", "0")));
+        EmbeddedApp app = null;
+        try {
+            if (target == null) {
+                if (!Files.isRegularFile(war)) {
+                    throw new IllegalStateException(war.toAbsolutePath() + " not found; build it with mvn package in ../CalorieCalculator or set load.war");
+                }
+                System.out.println("Deploying " + war + " with " + database.users + " users...");
+                app = EmbeddedApp.start(war, contextPath, model.url(), database);
+                target = app.baseUrl();
+            } else {
+                System.out.println("Stub model for the target's macrotracker.model.url: " + model.url());
+                String jdbcUrl = System.getProperty("load.jdbc.url");
+                if (jdbcUrl != null) {
+                    System.out.println("Seeding " + database.users + " users into " + jdbcUrl + "...");
+                    try (Connection conn = DriverManager.getConnection(jdbcUrl,
+                            System.getProperty("load.jdbc.user", "root"), System.getProperty("load.jdbc.password", ""))) {
+                        database.load(conn);
+                    }
+                }
+            }
+
+            Photos photos = new Photos(Integer.getInteger("load.photos", 8));
+            Results results = new Results();
+            System.out.printf("Target %s: %d clients, %s, mix %s, model %d+%d ms%n", target, clients,
+                    rate > 0 ? rate + " req/s" : "closed loop", mix,
+                    Long.getLong("load.model.latencyMillis", 1_500L), Long.getLong("load.model.jitterMillis", 1_000L));
+            System.out.printf("Warming up for %d s, then measuring for %d s; photos average %d KB%n",
+                    warmupSeconds, durationSeconds, photos.averageSize() / 1024);
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * clients / rate) : 0;
+            List<Thread> threads = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                int userId = i % database.users + 1;
+                Thread thread = new Thread(new VirtualUser(userId, client, target, mix, database, photos, results,
+                        interval, measureFrom, end), "client-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            // Calls still out at the end are waited for, up to their timeout, since they were due in the run
+            long joinDeadline = end + TimeUnit.SECONDS.toNanos(Long.getLong("load.timeoutSeconds", 120L));
+            for (Thread thread : threads) {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(joinDeadline - System.nanoTime())));
+            }
+
+            System.out.println();
+            results.print(System.out, durationSeconds);
+            System.out.println();
+            System.out.printf("Stub model: %d calls, %d failed on purpose%n", model.getCalls(), model.getFailures());
+            if (app == null) {
+                System.out.println("Server-side breakdown: " + target + "/metrics and " + target + "/stats/sql (with X-Admin-Token)");
+            }
+        } finally {
+            if (app != null) {
+                app.stop();
+                deleteRecursively(app.getBaseDir());
+            }
+            model.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (Exception e) {
+            System.err.println("Could not remove " + dir + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.caloriecalculator.loadtest;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meal photos as the app uploads them: scaled to 1280x720 and JPEG-encoded at quality 0.8.
+ *
+ * A few base images are drawn up front with enough detail to compress to a realistic size. Every
+ * upload is made a new photo, as far as the server's content hash goes, by inserting a comment
+ * segment with a counter after the JPEG header, so ImageQuery does real work instead of answering
+ * from its result cache. load.repeatPhotoPercent of uploads resend an earlier photo instead, like
+ * a user retrying.
+ */
+final class Photos {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    private final byte[][] bases;
+    private final double repeatPercent = Double.parseDouble(System.getProperty("load.repeatPhotoPercent", "5"));
+    private final AtomicLong counter = new AtomicLong();
+
+    Photos(int count) throws IOException {
+        bases = new byte[count][];
+        Random random = new Random(45);
+        for (int i = 0; i < count; i++) {
+            bases[i] = draw(random);
+        }
+    }
+
+    int averageSize() {
+        long total = 0;
+        for (byte[] base : bases) {
+            total += base.length;
+        }
+        return (int) (total / bases.length);
+    }
+
+    // Base64 of the next upload
+    String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long seen = counter.get();
+        long id = seen > 0 && random.nextDouble() * 100 < repeatPercent
+                ? random.nextLong(seen)
+                : counter.getAndIncrement();
+        return Base64.getEncoder().encodeToString(tagged(bases[(int) (id % bases.length)], id));
+    }
+
+    // The JPEG with a COM segment holding the id right after SOI
+    private static byte[] tagged(byte[] jpeg, long id) {
+        byte[] comment = ("loadtest " + id).getBytes(StandardCharsets.US_ASCII);
+        int length = comment.length + 2;
+        byte[] out = new byte[jpeg.length + 2 + length];
+        out[0] = jpeg[0];
+        out[1] = jpeg[1];
+        out[2] = (byte) 0xFF;
+        out[3] = (byte) 0xFE;
+        out[4] = (byte) (length >> 8);
+        out[5] = (byte) length;
+        System.arraycopy(comment, 0, out, 6, comment.length);
+        System.arraycopy(jpeg, 2, out, 6 + comment.length, jpeg.length - 2);
+        return out;
+    }
+
+    private static byte[] draw(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)),
+                WIDTH, HEIGHT, new Color(random.nextInt(0xFFFFFF))));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        for (int i = 0; i < 400; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            int size = 10 + random.nextInt(150);
+            g.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), size, size / 2 + random.nextInt(size));
+        }
+        g.dispose();
+        // Sensor-like noise, so the photo doesn't compress far better than a real one
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = image.getRGB(x, y);
+                int noise = random.nextInt(25) - 12;
+                int r = clamp((rgb >> 16 & 0xFF) + noise);
+                int gr = clamp((rgb >> 8 & 0xFF) + noise);
+                int b = clamp((rgb & 0xFF) + noise);
+                image.setRGB(x, y, r << 16 | gr << 8 | b);
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.8f);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
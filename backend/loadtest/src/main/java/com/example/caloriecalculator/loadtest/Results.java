@@ -0,0 +1,99 @@
+package com.example.caloriecalculator.loadtest;
+
+import com.example.caloriecalculator.helper.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome of every measured call, per endpoint. Latencies go into the app's own
+ * {@link LatencyHistogram}, so percentiles here and on /metrics carry the same 12.5% resolution.
+ * A call counts as an error when it got no response, a 4xx or 5xx, a JSON body with
+ * "success": false (the app answers a failed login with 200), or ImageQuery's placeholder result
+ * for a failed model call.
+ */
+final class Results {
+    private final Map<Call, Endpoint> endpoints = new EnumMap<>(Call.class);
+
+    Results() {
+        for (Call call : Call.values()) {
+            endpoints.put(call, new Endpoint());
+        }
+    }
+
+    private static final class Endpoint {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    }
+
+    // outcome is the HTTP status, with the error message for errors, or the exception's class name when there was no response
+    void record(Call call, long nanos, String outcome, boolean error) {
+        Endpoint endpoint = endpoints.get(call);
+        endpoint.latency.record(nanos);
+        endpoint.maxNanos.accumulateAndGet(nanos, Math::max);
+        endpoint.outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        if (error) {
+            endpoint.errors.increment();
+        }
+    }
+
+    void print(PrintStream out, double seconds) {
+        out.printf("%-16s %9s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long[] totals = new long[LatencyHistogram.BUCKET_COUNT];
+        long totalErrors = 0;
+        long totalMax = 0;
+        for (Map.Entry<Call, Endpoint> entry : endpoints.entrySet()) {
+            long[] counts = entry.getValue().latency.snapshot();
+            long requests = sum(counts);
+            if (requests == 0) {
+                continue;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                totals[i] += counts[i];
+            }
+            long errors = entry.getValue().errors.sum();
+            long max = entry.getValue().maxNanos.get();
+            totalErrors += errors;
+            totalMax = Math.max(totalMax, max);
+            printRow(out, entry.getKey().path(), counts, requests, errors, max, seconds);
+        }
+        long requests = sum(totals);
+        printRow(out, "all", totals, requests, totalErrors, totalMax, seconds);
+
+        out.println();
+        out.println("Responses by endpoint:");
+        for (Map.Entry<Call, Endpoint> entry : endpoints.entrySet()) {
+            if (!entry.getValue().outcomes.isEmpty()) {
+                StringBuilder line = new StringBuilder();
+                new TreeMap<>(entry.getValue().outcomes).forEach((outcome, count) ->
+                        line.append(line.length() == 0 ? "" : ", ").append(outcome).append(" x").append(count.sum()));
+                out.printf("%-16s %s%n", entry.getKey().path(), line);
+            }
+        }
+    }
+
+    private static void printRow(PrintStream out, String name, long[] counts, long requests, long errors,
+                                 long maxNanos, double seconds) {
+        out.printf("%-16s %9d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, requests, errors, requests / seconds,
+                LatencyHistogram.percentileMicros(counts, 50) / 1000.0,
+                LatencyHistogram.percentileMicros(counts, 99) / 1000.0,
+                LatencyHistogram.percentileMicros(counts, 99.9) / 1000.0,
+                maxNanos / 1_000_000.0);
+    }
+
+    private static long sum(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.caloriecalculator.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stands in for the vision model behind macrotracker.model.url. Each call reads the whole request
+ * (prompt and base64 image), waits latencyMillis plus a uniform random part of jitterMillis, and
+ * answers with a fixed meal in the JSON shape ImageQueryServlet expects. errorPercent of calls get
+ * a 500 instead, after the same wait, to see how failures from the model show up end to end.
+ */
+final class StubModel {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorPercent;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private StubModel(HttpServer server, long latencyMillis, long jitterMillis, double errorPercent) {
+        this.server = server;
+        this.executor = Executors.newCachedThreadPool();
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorPercent = errorPercent;
+    }
+
+    static StubModel start(int port, long latencyMillis, long jitterMillis, double errorPercent) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        StubModel model = new StubModel(server, latencyMillis, jitterMillis, errorPercent);
+        server.createContext("/", model::handle);
+        server.setExecutor(model.executor);
+        server.start();
+        return model;
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getFailures() {
+        return failures.sum();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+            calls.increment();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (random.nextDouble() * 100 < errorPercent) {
+                failures.increment();
+                send(exchange, 500, "{\"error\":\"stub failure\"}");
+                return;
+            }
+            JSONObject meal = new JSONObject()
+                    .put("label", "Grilled chicken with rice")
+                    .put("calories", 400 + random.nextInt(400))
+                    .put("protein", 20 + random.nextInt(30))
+                    .put("carbs", 30 + random.nextInt(60))
+                    .put("fat", 5 + random.nextInt(25));
+            send(exchange, 200, meal.toString());
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.caloriecalculator.loadtest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One phone: signs in as its account, then makes calls from the mix one after another until the
+ * run ends. Requests are built the way the iOS app builds them: POST with X-Mobile-App: true, form
+ * bodies except for ImageQuery's JSON, dates as yyyy-MM-dd, and the session cookie from the last
+ * login sent back on every call, as URLSession's shared cookie store does.
+ *
+ * With intervalNanos of 0 the next call starts as soon as the last one is answered. Otherwise
+ * calls are started on a fixed schedule and latency is measured from when a call was due, not
+ * when it was sent, so a server that falls behind shows it in the percentiles rather than in a
+ * quietly lower request rate.
+ */
+final class VirtualUser implements Runnable {
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("load.timeoutSeconds", 120L));
+
+    private final int userId;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final Call.Mix mix;
+    private final LoadDatabase database;
+    private final Photos photos;
+    private final Results results;
+    private final long intervalNanos;
+    private final long measureFromNanos;
+    private final long endNanos;
+
+    private String token;
+    private String sessionCookie;
+
+    VirtualUser(int userId, HttpClient client, String baseUrl, Call.Mix mix, LoadDatabase database, Photos photos,
+                Results results, long intervalNanos, long measureFromNanos, long endNanos) {
+        this.userId = userId;
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.database = database;
+        this.photos = photos;
+        this.results = results;
+        this.intervalNanos = intervalNanos;
+        this.measureFromNanos = measureFromNanos;
+        this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+        // The first login is setup; a phone that can't sign in has nothing else to send
+        call(Call.LOGIN, System.nanoTime());
+        if (token == null) {
+            return;
+        }
+        // Spread the first calls over one interval so clients don't start in lockstep
+        long due = System.nanoTime() + (intervalNanos > 0 ? ThreadLocalRandom.current().nextLong(intervalNanos) : 0);
+        while (!Thread.currentThread().isInterrupted()) {
+            if (intervalNanos > 0) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                due = System.nanoTime();
+            }
+            if (due >= endNanos) {
+                return;
+            }
+            call(mix.next(), due);
+            due += intervalNanos;
+        }
+    }
+
+    private void call(Call call, long dueNanos) {
+        String outcome;
+        boolean error;
+        try {
+            HttpResponse<String> response = client.send(request(call), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            error = response.statusCode() >= 400 || response.body().contains("\"success\":false");
+            outcome = String.valueOf(response.statusCode()) + (error ? message(response.body()) : "");
+            // A failed model call is answered 200 with the placeholder result {"label":"error","calories":-1}
+            if (call == Call.IMAGE_QUERY && !error && response.body().contains("\"label\":\"error\"")) {
+                error = true;
+                outcome += " model error";
+            }
+            if (call == Call.LOGIN && !error) {
+                signedIn(response);
+            }
+        } catch (IOException e) {
+            outcome = e.getClass().getSimpleName();
+            error = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (dueNanos >= measureFromNanos) {
+            results.record(call, System.nanoTime() - dueNanos, outcome, error);
+        }
+    }
+
+    // " \"<message>\"" from a JSON error body ("message", or "error" as ImageQuery uses), or ""
+    private static String message(String body) {
+        try {
+            JSONObject json = new JSONObject(body);
+            String message = json.optString("message", json.optString("error", ""));
+            return message.isEmpty() ? "" : " \"" + message + "\"";
+        } catch (JSONException e) {
+            return "";
+        }
+    }
+
+    private void signedIn(HttpResponse<String> response) {
+        token = new JSONObject(response.body()).optString("token", null);
+        Optional<String> cookie = response.headers().allValues("Set-Cookie").stream()
+                .filter(header -> header.startsWith("JSESSIONID="))
+                .map(header -> header.substring(0, header.indexOf(';') > 0 ? header.indexOf(';') : header.length()))
+                .findFirst();
+        cookie.ifPresent(value -> sessionCookie = value);
+    }
+
+    private HttpRequest request(Call call) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String today = LocalDate.now().toString();
+        switch (call) {
+            case LOGIN:
+                return form(call, "username", LoadDatabase.username(userId), "password", LoadDatabase.PASSWORD);
+            case VALIDATE_TOKEN:
+                return form(call, "token", token);
+            case FIND_MACRO:
+                // Mostly today's dashboard, sometimes a day from the history tab
+                String day = random.nextInt(4) == 0
+                        ? LocalDate.now().minusDays(1 + random.nextInt(Math.max(1, database.days))).toString()
+                        : today;
+                return form(call, "userId", String.valueOf(userId), "entryDate", day);
+            case LOG_MACRO:
+                return form(call, "userId", String.valueOf(userId), "entryDate", today,
+                        "mealType", LoadDatabase.MEAL_TYPES[random.nextInt(LoadDatabase.MEAL_TYPES.length)],
+                        "calories", String.valueOf(100 + random.nextInt(800)),
+                        "carbs", String.valueOf(random.nextInt(120)),
+                        "protein", String.valueOf(random.nextInt(60)),
+                        "fat", String.valueOf(random.nextInt(50)));
+            case SCAN_FOOD:
+                return form(call, "barcode", LoadDatabase.barcode(userId, random.nextInt(Math.max(1, database.foodsPerUser))),
+                        "userId", String.valueOf(userId));
+            case UPDATE_PROFILE:
+                return form(call, "userId", String.valueOf(userId),
+                        "currentWeight", String.valueOf(55 + random.nextInt(50)),
+                        "targetWeight", String.valueOf(55 + random.nextInt(40)));
+            case IMAGE_QUERY:
+                String body = new JSONObject()
+                        .put("userId", userId)
+                        .put("entryDate", today)
+                        .put("base64Image", photos.next())
+                        .toString();
+                return builder(call)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                        .build();
+            default:
+                throw new IllegalArgumentException(call.toString());
+        }
+    }
+
+    private HttpRequest form(Call call, String... pairs) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            body.append(i == 0 ? "" : "&").append(pairs[i]).append('=')
+                    .append(URLEncoder.encode(pairs[i + 1] != null ? pairs[i + 1] : "", StandardCharsets.UTF_8));
+        }
+        return builder(call)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private HttpRequest.Builder builder(Call call) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + call.path()))
+                .timeout(TIMEOUT)
+                .header("X-Mobile-App", "true");
+        if (sessionCookie != null) {
+            builder.header("Cookie", sessionCookie);
+        }
+        return builder;
+    }
+}